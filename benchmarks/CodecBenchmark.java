@@ -0,0 +1,130 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Measures what each object codec costs in CPU against the bytes it
+ * saves. Run as
+ *      java gitlet.CodecBenchmark [DIR]
+ * to encode every regular file under DIR (or, without DIR, a generated
+ * text corpus) once per codec setting, and print the stored size and
+ * the encode/decode throughput.
+ * @author Katrina Sharonin.*/
+public class CodecBenchmark {
+
+    /** Settings compared, as config codec name and level. */
+    private static final Object[][] SETTINGS = {
+        {"none", 0}, {"deflate", 1}, {"deflate", 6}, {"deflate", 9},
+    };
+
+    /** Number of timed passes over the corpus per setting. */
+    private static final int PASSES = 3;
+
+    /** Run the comparison over ARGS[0] or a generated corpus. */
+    public static void main(String... args) throws IOException {
+        List<byte[]> corpus = args.length > 0
+                ? readCorpus(Paths.get(args[0])) : generatedCorpus();
+        long rawBytes = 0;
+        for (byte[] content : corpus) {
+            rawBytes += content.length;
+        }
+        System.out.printf("%d objects, %d bytes%n", corpus.size(),
+                rawBytes);
+        System.out.printf("%-10s %12s %7s %12s %12s%n", "codec",
+                "stored", "ratio", "encode MB/s", "decode MB/s");
+        for (Object[] setting : SETTINGS) {
+            ObjectCodec codec = ObjectCodec.forName((String) setting[0],
+                    (Integer) setting[1]);
+            List<byte[]> stored = new ArrayList<>();
+            long storedBytes = 0;
+            for (byte[] content : corpus) {
+                byte[] encoded = ObjectStore.encode(codec, content);
+                stored.add(encoded);
+                storedBytes += Math.min(encoded.length, content.length);
+            }
+            long encodeNanos = Long.MAX_VALUE;
+            long decodeNanos = Long.MAX_VALUE;
+            for (int pass = 0; pass < PASSES; pass += 1) {
+                long start = System.nanoTime();
+                for (byte[] content : corpus) {
+                    ObjectStore.encode(codec, content);
+                }
+                encodeNanos = Math.min(encodeNanos,
+                        System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int i = 0; i < stored.size(); i += 1) {
+                    decode(codec, stored.get(i), corpus.get(i).length);
+                }
+                decodeNanos = Math.min(decodeNanos,
+                        System.nanoTime() - start);
+            }
+            System.out.printf("%-10s %12d %6.2fx %12.1f %12.1f%n",
+                    setting[0] + "-" + setting[1], storedBytes,
+                    (double) rawBytes / storedBytes,
+                    mbPerSecond(rawBytes, encodeNanos),
+                    mbPerSecond(rawBytes, decodeNanos));
+        }
+    }
+
+    /** Decode STORED, which holds LENGTH bytes once decoded by CODEC. */
+    private static void decode(ObjectCodec codec, byte[] stored,
+                               int length) throws IOException {
+        try (InputStream in = codec.decode(
+                new ByteArrayInputStream(stored))) {
+            in.readNBytes(length);
+        }
+    }
+
+    /** Return throughput of BYTES processed in NANOS.
+     * @return is megabytes per second.*/
+    private static double mbPerSecond(long bytes, long nanos) {
+        return bytes / 1e6 / (nanos / 1e9);
+    }
+
+    /** Return the contents of every regular file under ROOT.
+     * @return is the corpus.*/
+    private static List<byte[]> readCorpus(Path root) throws IOException {
+        List<byte[]> result = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    result.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return a deterministic corpus of source-like text files.
+     * @return is the corpus.*/
+    private static List<byte[]> generatedCorpus() {
+        String[] words = {"public", "static", "void", "return", "if",
+            "else", "for", "String", "int", "commit", "blob", "index",
+            "branch", "merge", "file", "=", "{", "}", "(", ")", ";"};
+        Random random = new Random(61);
+        List<byte[]> result = new ArrayList<>();
+        for (int file = 0; file < 2000; file += 1) {
+            StringBuilder text = new StringBuilder();
+            int lines = 20 + random.nextInt(400);
+            for (int line = 0; line < lines; line += 1) {
+                text.append("    ".repeat(random.nextInt(4)));
+                int count = 1 + random.nextInt(10);
+                for (int w = 0; w < count; w += 1) {
+                    text.append(words[random.nextInt(words.length)])
+                            .append(' ');
+                }
+                text.append('\n');
+            }
+            result.add(text.toString().getBytes());
+        }
+        return result;
+    }
+}
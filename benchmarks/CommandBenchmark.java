@@ -0,0 +1,249 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/** Measures the RepoFace commands on synthetic repositories of
+ * growing size. Run as
+ *      java gitlet.CommandBenchmark [--json] [--commits M]
+ *          [--branches K] [--size S] [--churn C] [FILES...]
+ * For each FILES (default 100, 1000 and 10000) it makes a repository
+ * with SyntheticRepo in a temporary directory and, in a fresh JVM
+ * working there (repository paths are fixed once a JVM loads them),
+ * times add, commit, status, checkout of a branch, reset, merge, log
+ * and find: WARMUPS untimed runs, then ITERATIONS timed ones, each
+ * after an untimed setup putting the repository in the state the
+ * command needs. Output of the commands is dropped. Results are
+ * printed as a table, or with --json as a JSON array of one object
+ * per command and scale, to compare against earlier runs.
+ * @author Katrina Sharonin.*/
+public class CommandBenchmark {
+
+    /** Untimed runs of each command before timing it. */
+    private static final int WARMUPS = 3;
+
+    /** Timed runs of each command. */
+    private static final int ITERATIONS = 10;
+
+    /** Scales, in files, measured when none are given. */
+    private static final int[] DEFAULT_FILES = {100, 1000, 10000};
+
+    /** Argument making the JVM measure one repository. */
+    private static final String FORKED = "--forked";
+
+    /** Shape of every repository, in JSON. */
+    private String _shape;
+
+    /** Where results go, one JSON object per line. */
+    private PrintStream _report;
+
+    /** Number of merges made so far. */
+    private int _merges;
+
+    /** Run the benchmark described by ARGS. */
+    public static void main(String... args) throws Exception {
+        if (args.length > 0 && args[0].equals(FORKED)) {
+            forked(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        boolean json = false;
+        String[] shape = {"50", "4", "256", "0.05"};
+        List<Integer> scales = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 1) {
+            switch (args[i]) {
+            case "--json" -> json = true;
+            case "--commits" -> shape[0] = args[++i];
+            case "--branches" -> shape[1] = args[++i];
+            case "--size" -> shape[2] = args[++i];
+            case "--churn" -> shape[3] = args[++i];
+            default -> scales.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (scales.isEmpty()) {
+            for (int files : DEFAULT_FILES) {
+                scales.add(files);
+            }
+        }
+        List<String> results = new ArrayList<>();
+        if (!json) {
+            System.out.printf("%-10s %8s %12s %12s %12s%n", "command",
+                    "files", "mean us", "median us", "min us");
+        }
+        for (int files : scales) {
+            for (String result : fork(files, shape)) {
+                results.add(result);
+                if (!json) {
+                    System.out.printf(Locale.ROOT,
+                            "%-10s %8d %12.0f %12.0f %12.0f%n",
+                            field(result, "command"), files,
+                            Double.parseDouble(field(result, "mean_us")),
+                            Double.parseDouble(field(result, "median_us")),
+                            Double.parseDouble(field(result, "min_us")));
+                }
+            }
+        }
+        if (json) {
+            System.out.println("[");
+            for (int i = 0; i < results.size(); i += 1) {
+                System.out.println("  " + results.get(i)
+                        + (i + 1 < results.size() ? "," : ""));
+            }
+            System.out.println("]");
+        }
+    }
+
+    /** Measure a repository of FILES files and SHAPE (commits,
+     * branches, size and churn) in a fresh JVM and temporary directory.
+     * @return is the JSON object of each command.*/
+    private static List<String> fork(int files, String[] shape)
+        throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("gitlet-bench");
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path")
+                .split(File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(new File(entry).getAbsolutePath());
+        }
+        List<String> command = new ArrayList<>(List.of(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-cp", classPath.toString(), CommandBenchmark.class.getName(),
+                FORKED, Integer.toString(files)));
+        command.addAll(Arrays.asList(shape));
+        Process process = new ProcessBuilder(command)
+                .directory(dir.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        List<String> result = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                result.add(line);
+            }
+        }
+        int code = process.waitFor();
+        try (Stream<Path> all = Files.walk(dir)) {
+            all.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+        if (code != 0) {
+            throw new IllegalStateException("benchmark of " + files
+                    + " files failed");
+        }
+        return result;
+    }
+
+    /** Return the value of KEY in the flat JSON object OBJECT.
+     * @return is the value, unquoted.*/
+    private static String field(String object, String key) {
+        int start = object.indexOf("\"" + key + "\": ") + key.length() + 4;
+        int end = start;
+        while (end < object.length() && object.charAt(end) != ','
+                && object.charAt(end) != '}') {
+            end += 1;
+        }
+        return object.substring(start, end).replace("\"", "");
+    }
+
+    /** Generate a repository as described by ARGS (files, commits,
+     * branches, size and churn) in the working directory and time each
+     * command on it, printing one JSON object per command. */
+    private static void forked(String... args) {
+        int files = Integer.parseInt(args[0]);
+        int commits = Integer.parseInt(args[1]);
+        int branches = Integer.parseInt(args[2]);
+        int size = Integer.parseInt(args[3]);
+        double churn = Double.parseDouble(args[4]);
+        SyntheticRepo repo = new SyntheticRepo(files, size, churn, 61);
+        repo.generate(commits, branches);
+        CommandBenchmark bench = new CommandBenchmark();
+        bench._shape = String.format(Locale.ROOT, "\"files\": %d, "
+                + "\"commits\": %d, \"branches\": %d, \"size\": %d, "
+                + "\"churn\": %s", files, commits, branches, size, churn);
+        bench._report = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            bench.run(repo, branches > 1 ? SyntheticRepo.branchName(1)
+                    : null);
+        } finally {
+            System.setOut(bench._report);
+        }
+    }
+
+    /** Time every command on REPO, checking out BRANCH (if not null)
+     * and back to master. */
+    private void run(SyntheticRepo repo, String branch) {
+        int[] next = {0};
+        time("status", () -> { }, RepoFace::statusCommand);
+        time("log", () -> { }, () -> RepoFace.logCommand(Long.MAX_VALUE,
+                0, Long.MIN_VALUE));
+        time("find", () -> { }, () -> RepoFace.findCommand(
+                SyntheticRepo.message(1)));
+        time("add", () -> repo.write(next[0] % repo.files()),
+                () -> RepoFace.addCommand(SyntheticRepo.fileName(
+                        next[0]++ % repo.files())));
+        time("commit", () -> repo.churn(repo.churnCount()),
+                () -> RepoFace.commitCommand("benchmark commit"));
+        if (branch != null) {
+            boolean[] onBranch = {false};
+            time("checkout", () -> { }, () -> {
+                RepoFace.checkoutCommandBRANCHNAME(
+                        onBranch[0] ? "master" : branch);
+                onBranch[0] = !onBranch[0];
+            });
+            if (onBranch[0]) {
+                RepoFace.checkoutCommandBRANCHNAME("master");
+            }
+        }
+        String tip = Utils.readContentsAsString(RepoFace.headdReturner());
+        String parent = Commit.getCommitFromFile(tip).getParentLink();
+        String[] target = {parent};
+        time("reset", () -> { }, () -> {
+            RepoFace.resetCommand(target[0]);
+            target[0] = target[0].equals(parent) ? tip : parent;
+        });
+        RepoFace.resetCommand(tip);
+        time("merge", () -> {
+            _merges += 1;
+            repo.diverge("merge" + _merges, 2 * _merges);
+        }, () -> RepoFace.mergeCommand("merge" + _merges));
+    }
+
+    /** Time COMMAND, each run after SETUP, and report it as NAME. */
+    private void time(String name, Runnable setup, Runnable command) {
+        long[] nanos = new long[ITERATIONS];
+        for (int i = -WARMUPS; i < ITERATIONS; i += 1) {
+            setup.run();
+            long start = System.nanoTime();
+            try {
+                command.run();
+            } catch (Main.Exit excp) {
+                throw new IllegalStateException(name + " stopped early");
+            }
+            if (i >= 0) {
+                nanos[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0);
+        _report.printf(Locale.ROOT, "{\"command\": \"%s\", %s, "
+                + "\"iterations\": %d, \"mean_us\": %.1f, "
+                + "\"median_us\": %.1f, \"min_us\": %.1f}%n", name, _shape,
+                ITERATIONS, mean / 1e3, nanos[ITERATIONS / 2] / 1e3,
+                nanos[0] / 1e3);
+    }
+}
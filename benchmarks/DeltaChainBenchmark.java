@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/** Measures how delta chain depth trades storage for read latency.
+ * Run as
+ *      java gitlet.DeltaChainBenchmark [LINES [CHANGED]]
+ * It builds a config-like file of LINES lines (default 3000) and a
+ * history of versions each changing CHANGED lines (default 3), stores
+ * them the way repack-deltas does with deflate, and for each depth
+ * bound reports the stored size against whole copies and the time to
+ * rebuild the deepest version with a cold delta cache.
+ * @author Katrina Sharonin.*/
+public class DeltaChainBenchmark {
+
+    /** Depth bounds compared. */
+    private static final int[] DEPTHS = {0, 1, 2, 5, 10, 20, 50};
+
+    /** Number of timed rebuilds per depth. */
+    private static final int ROUNDS = 200;
+
+    /** Run the comparison. */
+    public static void main(String... args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        int changed = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int versionCount = DEPTHS[DEPTHS.length - 1] + 1;
+        List<byte[]> versions = history(lines, changed, versionCount);
+        ObjectCodec codec = ObjectCodec.forName("deflate", -1);
+        long wholeBytes = 0;
+        for (byte[] version : versions) {
+            wholeBytes += ObjectStore.encode(codec, version).length;
+        }
+        System.out.printf("%d versions of %d bytes, %d bytes stored "
+                + "whole%n", versions.size(), versions.get(0).length,
+                wholeBytes);
+        System.out.printf("%6s %12s %7s %14s%n", "depth", "stored",
+                "ratio", "rebuild us");
+        for (int depth : DEPTHS) {
+            List<byte[]> stored = new ArrayList<>();
+            long storedBytes = 0;
+            for (int i = 0; i < versions.size(); i += 1) {
+                byte[] entry = i % (depth + 1) == 0
+                        ? versions.get(i)
+                        : Delta.create(versions.get(i - 1),
+                                versions.get(i));
+                byte[] encoded = ObjectStore.encode(codec, entry);
+                stored.add(encoded);
+                storedBytes += encoded.length;
+            }
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round += 1) {
+                long start = System.nanoTime();
+                byte[] content = decode(codec, stored.get(0));
+                for (int i = 1; i <= depth; i += 1) {
+                    content = Delta.apply(content,
+                            decode(codec, stored.get(i)), 0);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+                if (round == 0 && !Arrays.equals(content,
+                        versions.get(depth))) {
+                    throw new AssertionError("rebuilt wrong content");
+                }
+            }
+            System.out.printf("%6d %12d %6.1fx %14.1f%n", depth,
+                    storedBytes, (double) wholeBytes / storedBytes,
+                    best / 1e3);
+        }
+    }
+
+    /** Return COUNT versions of a LINES line file, each changing
+     * CHANGED lines of the one before.
+     * @return is the versions, oldest first.*/
+    private static List<byte[]> history(int lines, int changed,
+                                        int count) {
+        Random random = new Random(61);
+        String[] text = new String[lines];
+        for (int i = 0; i < lines; i += 1) {
+            text[i] = "setting." + i + " = " + random.nextInt(1000000);
+        }
+        List<byte[]> result = new ArrayList<>();
+        for (int v = 0; v < count; v += 1) {
+            for (int c = 0; c < changed && v > 0; c += 1) {
+                text[random.nextInt(lines)] = "setting.changed" + v
+                        + " = " + random.nextInt();
+            }
+            result.add(String.join("\n", text)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /** Return STORED decoded with CODEC.
+     * @return is the content.*/
+    private static byte[] decode(ObjectCodec codec, byte[] stored)
+            throws IOException {
+        try (InputStream in = codec.decode(
+                new ByteArrayInputStream(stored))) {
+            return in.readAllBytes();
+        }
+    }
+}
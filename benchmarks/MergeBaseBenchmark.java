@@ -0,0 +1,141 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/** Measures merge-base queries on a synthetic history.
+ * Run as
+ *      java gitlet.MergeBaseBenchmark [COMMITS [LANES]]
+ * It builds an in-memory commit-graph of COMMITS commits (default
+ * 100000) spread over LANES branches (default 16) that often merge each
+ * other, criss-cross included, then times MergeBase on pairs of recent
+ * commits against painting both full ancestries, and checks both give
+ * the same bases.
+ * @author Katrina Sharonin.*/
+public class MergeBaseBenchmark {
+
+    /** Number of timed queries. */
+    private static final int QUERIES = 200;
+
+    /** Chance that a commit merges another branch. */
+    private static final double MERGE_CHANCE = 0.1;
+
+    /** Run the comparison. */
+    public static void main(String... args) {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int lanes = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        Random random = new Random(61);
+        CommitGraph graph = history(commits, lanes, random);
+        int[][] pairs = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i += 1) {
+            int recent = Math.max(1, commits / 20);
+            pairs[i] = new int[] {commits - 1 - random.nextInt(recent),
+                commits - 1 - random.nextInt(recent)};
+        }
+        long walkNanos = 0;
+        long fullNanos = 0;
+        int several = 0;
+        for (int[] pair : pairs) {
+            long start = System.nanoTime();
+            List<Integer> bases = MergeBase.bases(graph, pair[0], pair[1]);
+            walkNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<Integer> expected = fullBases(graph, pair[0], pair[1]);
+            fullNanos += System.nanoTime() - start;
+            if (!bases.containsAll(expected)
+                    || !expected.containsAll(bases)) {
+                throw new AssertionError("bases differ for " + pair[0]
+                        + " and " + pair[1]);
+            }
+            several += bases.size() > 1 ? 1 : 0;
+        }
+        System.out.printf("%d commits on %d branches, %d queries, "
+                + "%d with several bases%n", commits, lanes, QUERIES,
+                several);
+        System.out.printf("%-16s %12s%n", "method", "us/query");
+        System.out.printf("%-16s %12.1f%n", "merge-base walk",
+                walkNanos / 1e3 / QUERIES);
+        System.out.printf("%-16s %12.1f%n", "full ancestries",
+                fullNanos / 1e3 / QUERIES);
+    }
+
+    /** Return a graph of COMMITS commits on LANES branches, choosing
+     * merges with RANDOM.
+     * @return is the graph.*/
+    private static CommitGraph history(int commits, int lanes,
+                                       Random random) {
+        ByteBuffer records =
+                ByteBuffer.allocate(commits * CommitGraph.RECORD_SIZE);
+        int[] generations = new int[commits];
+        int[] tips = new int[lanes];
+        for (int i = 0; i < commits; i += 1) {
+            int parent = CommitGraph.NONE;
+            int secondParent = CommitGraph.NONE;
+            if (i > 0) {
+                int lane = random.nextInt(lanes);
+                parent = tips[lane];
+                if (random.nextDouble() < MERGE_CHANCE) {
+                    secondParent = tips[random.nextInt(lanes)];
+                    if (secondParent == parent) {
+                        secondParent = CommitGraph.NONE;
+                    }
+                }
+                tips[lane] = i;
+            }
+            generations[i] = 1 + Math.max(
+                    parent == CommitGraph.NONE ? 0 : generations[parent],
+                    secondParent == CommitGraph.NONE
+                            ? 0 : generations[secondParent]);
+            records.putLong(i).putLong(0).putInt(0).putInt(parent)
+                    .putInt(secondParent).putInt(generations[i])
+                    .putLong(i * 1000L);
+        }
+        records.flip();
+        return CommitGraph.of(records);
+    }
+
+    /** Return the best common ancestors of positions ONE and TWO in
+     * GRAPH by painting both whole ancestries.
+     * @return is the positions.*/
+    private static List<Integer> fullBases(CommitGraph graph, int one,
+                                           int two) {
+        BitSet common = ancestry(graph, List.of(one));
+        common.and(ancestry(graph, List.of(two)));
+        List<Integer> below = new ArrayList<>();
+        for (int p = common.nextSetBit(0); p >= 0;
+             p = common.nextSetBit(p + 1)) {
+            below.add(graph.parent(p));
+            below.add(graph.secondParent(p));
+        }
+        common.andNot(ancestry(graph, below));
+        List<Integer> result = new ArrayList<>();
+        for (int p = common.nextSetBit(0); p >= 0;
+             p = common.nextSetBit(p + 1)) {
+            result.add(p);
+        }
+        return result;
+    }
+
+    /** Return the positions in GRAPH reachable from STARTS, themselves
+     * included.
+     * @return is the set of positions.*/
+    private static BitSet ancestry(CommitGraph graph, List<Integer> starts) {
+        BitSet seen = new BitSet(graph.size());
+        Deque<Integer> work = new ArrayDeque<>(starts);
+        while (!work.isEmpty()) {
+            int position = work.pop();
+            if (position == CommitGraph.NONE || seen.get(position)) {
+                continue;
+            }
+            seen.set(position);
+            work.push(graph.parent(position));
+            work.push(graph.secondParent(position));
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,81 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/** Measures full-text queries over commit messages.
+ * Run as
+ *      java gitlet.SearchBenchmark [COMMITS]
+ * It indexes COMMITS (default 1000000) synthetic messages, each a few
+ * words from a 20000 word vocabulary, a common verb and often a ticket
+ * like JIRA-1234, in a temporary folder, then reports the best and
+ * median time of several queries.
+ * @author Katrina Sharonin.*/
+public class SearchBenchmark {
+
+    /** Queries timed. */
+    private static final String[] QUERIES = {"JIRA-1234", "fix",
+        "fix parser", "jira-12*", "w17 OR w42", "update w1* OR JIRA-7"};
+
+    /** Timed runs of each query. */
+    private static final int ROUNDS = 21;
+
+    /** Words starting each message. */
+    private static final String[] VERBS = {"Fix", "Add", "Update",
+        "Refactor", "Remove", "Document"};
+
+    /** Run the measurements. */
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Random random = new Random(61);
+        List<String> ids = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < commits; i += 1) {
+            ids.add(Utils.sha1("commit " + i));
+            StringBuilder message = new StringBuilder(
+                    VERBS[random.nextInt(VERBS.length)]);
+            for (int words = 2 + random.nextInt(6); words > 0; words -= 1) {
+                message.append(" w").append(random.nextInt(20000));
+            }
+            if (random.nextInt(3) == 0) {
+                message.append(" (JIRA-").append(random.nextInt(50000))
+                        .append(")");
+            }
+            if (random.nextInt(50) == 0) {
+                message.append(" in parser");
+            }
+            messages.add(message.toString());
+        }
+        File folder = Files.createTempDirectory("search").toFile();
+        SearchIndex index = new SearchIndex(folder);
+        long start = System.nanoTime();
+        index.rebuild(ids, messages);
+        System.out.printf("indexed %d messages in %.1f s, %d bytes%n",
+                commits, (System.nanoTime() - start) / 1e9,
+                Utils.join(folder, "postings").length());
+        System.out.printf("%-24s %9s %10s %10s%n", "query", "hits",
+                "best ms", "median ms");
+        for (String query : QUERIES) {
+            long[] times = new long[ROUNDS];
+            int hits = 0;
+            for (int round = 0; round < ROUNDS; round += 1) {
+                SearchIndex cold = new SearchIndex(folder);
+                long begin = System.nanoTime();
+                hits = cold.search(query).length;
+                times[round] = System.nanoTime() - begin;
+            }
+            Arrays.sort(times);
+            System.out.printf("%-24s %9d %10.2f %10.2f%n", query, hits,
+                    times[0] / 1e6, times[ROUNDS / 2] / 1e6);
+        }
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+}
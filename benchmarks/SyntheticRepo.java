@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/** Generates a repository of a given shape for benchmarks. Run as
+ *      java gitlet.SyntheticRepo [FILES [COMMITS [BRANCHES [SIZE
+ *          [CHURN [SEED]]]]]]
+ * in an empty directory to make a repository of FILES files (default
+ * 1000) of about SIZE bytes (default 256) and COMMITS commits (default
+ * 50) spread over BRANCHES branches (default 4, master included), each
+ * commit rewriting a CHURN fraction of the files (default 0.05). The
+ * first commit adds every file; each other branch then forks from
+ * master, gets its share of commits and leaves master to take its own.
+ * File contents and the files each commit changes only depend on SEED
+ * (default 61), so two runs give the same trees; commit IDs still
+ * differ, as commits hold their time.
+ * @author Katrina Sharonin.*/
+public class SyntheticRepo {
+
+    /** Words file contents are made of. */
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf",
+        "hotel", "india", "juliet", "kilo", "lima", "mike", "november",
+    };
+
+    /** Files written. */
+    private final int _files;
+
+    /** Approximate bytes in each file. */
+    private final int _size;
+
+    /** Fraction of the files each commit rewrites. */
+    private final double _churn;
+
+    /** Source of every choice. */
+    private final Random _random;
+
+    /** Number of commits made so far, the initial one excluded. */
+    private int _made;
+
+    /** Generator of FILES files of SIZE bytes, rewriting a CHURN
+     * fraction per commit, with choices seeded by SEED. */
+    SyntheticRepo(int files, int size, double churn, long seed) {
+        _files = files;
+        _size = size;
+        _churn = churn;
+        _random = new Random(seed);
+    }
+
+    /** Make the repository described by ARGS in the working
+     * directory. */
+    public static void main(String... args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int branches = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        double churn = args.length > 4 ? Double.parseDouble(args[4]) : 0.05;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 61;
+        long start = System.nanoTime();
+        new SyntheticRepo(files, size, churn, seed)
+                .generate(commits, branches);
+        System.out.printf("%d files, %d commits on %d branches in %.1f s%n",
+                files, commits, branches, (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Name of working file I.
+     * @return is the name.*/
+    static String fileName(int i) {
+        return "f" + i + ".txt";
+    }
+
+    /** Message of the Nth commit after the initial one.
+     * @return is the message.*/
+    static String message(int n) {
+        return "commit " + n;
+    }
+
+    /** Name of the Kth branch besides master.
+     * @return is the name.*/
+    static String branchName(int k) {
+        return "b" + k;
+    }
+
+    /** Make a repository of COMMITS commits on BRANCHES branches in the
+     * working directory, which must not have one. Its index is saved
+     * once, at the end, as in a batch; what commands print is dropped. */
+    void generate(int commits, int branches) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            RepoFace.initCommand();
+            RepoFace.beginBatch();
+            for (int i = 0; i < _files; i += 1) {
+                write(i);
+                RepoFace.addCommand(fileName(i));
+            }
+            RepoFace.commitCommand("initial files");
+            int share = Math.max(1, commits / Math.max(1, branches));
+            for (int k = 1; k < branches && _made < commits; k += 1) {
+                RepoFace.branchCommand(branchName(k));
+                RepoFace.checkoutCommandBRANCHNAME(branchName(k));
+                commit(Math.min(share, commits - _made));
+                RepoFace.checkoutCommandBRANCHNAME("master");
+                commit(Math.min(share, commits - _made));
+            }
+            commit(commits - _made);
+        } finally {
+            RepoFace.endBatch(true);
+            System.setOut(out);
+        }
+    }
+
+    /** Number of files.
+     * @return is the count.*/
+    int files() {
+        return _files;
+    }
+
+    /** Number of files each commit rewrites.
+     * @return is the count, at least 1.*/
+    int churnCount() {
+        return Math.max(1, (int) Math.round(_files * _churn));
+    }
+
+    /** Make COUNT commits on the current branch, each rewriting a
+     * CHURN fraction of the files. */
+    void commit(int count) {
+        for (int c = 0; c < count; c += 1) {
+            churn(churnCount());
+            _made += 1;
+            RepoFace.commitCommand(message(_made));
+        }
+    }
+
+    /** Rewrite and add COUNT files chosen at random. */
+    void churn(int count) {
+        for (int j = 0; j < count; j += 1) {
+            int i = _random.nextInt(_files);
+            write(i);
+            RepoFace.addCommand(fileName(i));
+        }
+    }
+
+    /** Make branch NAME, which once merged into master needs a merge
+     * commit: master and it each get a commit, master rewriting file
+     * FILE and the branch the file after it. Master stays checked
+     * out. */
+    void diverge(String name, int file) {
+        RepoFace.branchCommand(name);
+        write(file % _files);
+        RepoFace.addCommand(fileName(file % _files));
+        RepoFace.commitCommand("master side of " + name);
+        RepoFace.checkoutCommandBRANCHNAME(name);
+        write((file + 1) % _files);
+        RepoFace.addCommand(fileName((file + 1) % _files));
+        RepoFace.commitCommand("branch side of " + name);
+        RepoFace.checkoutCommandBRANCHNAME("master");
+    }
+
+    /** Write new random content to working file I. */
+    void write(int i) {
+        StringBuilder text = new StringBuilder(_size + 16);
+        while (text.length() < _size) {
+            text.append(WORDS[_random.nextInt(WORDS.length)])
+                    .append(_random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        text.append('\n');
+        try {
+            Files.write(new File(System.getProperty("user.dir"),
+                    fileName(i)).toPath(),
+                    text.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of the RepoFace commands on repositories made by
+ * SyntheticRepo, the JMH counterpart of CommandBenchmark. Build with
+ * "mvn package -Pjmh" and run, from an empty directory, as
+ *      java -jar PATH/target/benchmarks.jar -rf json [-p files=N,...]
+ * which leaves the results in jmh-result.json. Each benchmark runs in
+ * its own JVM, which makes a repository of the shape in the
+ * parameters in the working directory (repository paths are fixed
+ * once a JVM loads them, so it cannot be elsewhere) and deletes it
+ * when done. Add, commit and merge get an untimed setup before each
+ * call putting the repository in the state they need. Output of the
+ * commands is dropped.
+ * @author Katrina Sharonin.*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandJmh {
+
+    /** The repository every benchmark works in. */
+    @State(Scope.Benchmark)
+    public static class Repo {
+
+        /** Files in the repository. */
+        @Param({"100", "1000", "10000"})
+        public int files;
+
+        /** Commits made after the initial one. */
+        @Param("50")
+        public int commits;
+
+        /** Branches, master included. */
+        @Param("4")
+        public int branches;
+
+        /** Approximate bytes in each file. */
+        @Param("256")
+        public int size;
+
+        /** Fraction of the files each commit rewrites. */
+        @Param("0.05")
+        public double churn;
+
+        /** The generator, which keeps writing files. */
+        private SyntheticRepo _repo;
+
+        /** Output of the JVM, restored when done. */
+        private PrintStream _out;
+
+        /** Head commit once generated, and its parent. */
+        private String _tip, _parent;
+
+        /** Branch checkout switches to, or null if there is only
+         * master. */
+        private String _branch;
+
+        /** True if _branch is checked out. */
+        private boolean _onBranch;
+
+        /** True if reset last went to _parent. */
+        private boolean _atParent;
+
+        /** Number of files added and branches merged so far. */
+        private int _added, _merges;
+
+        /** Make the repository in the working directory. */
+        @Setup(Level.Trial)
+        public void generate() {
+            if (RepoFace.GITLET_FOLDER.exists()) {
+                throw new IllegalStateException("run from an empty "
+                        + "directory: this one has a repository");
+            }
+            _repo = new SyntheticRepo(files, size, churn, 61);
+            _repo.generate(commits, branches);
+            _out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            _tip = Utils.readContentsAsString(RepoFace.headdReturner());
+            _parent = Commit.getCommitFromFile(_tip).getParentLink();
+            _branch = branches > 1 ? SyntheticRepo.branchName(1) : null;
+        }
+
+        /** Delete the repository and the files it made. */
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            System.setOut(_out);
+            try (Stream<Path> all = Files.walk(RepoFace.GITLET_FOLDER
+                    .toPath())) {
+                all.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                        .forEach(File::delete);
+            }
+            File dir = RepoFace.GITLET_FOLDER.getParentFile();
+            for (int i = 0; i < files; i += 1) {
+                new File(dir, SyntheticRepo.fileName(i)).delete();
+            }
+        }
+    }
+
+    /** Before each add, rewrite the file it adds. */
+    @State(Scope.Thread)
+    public static class ToAdd {
+
+        /** Name of the file to add. */
+        private String _name;
+
+        /** Rewrite the next file of REPO. */
+        @Setup(Level.Invocation)
+        public void write(Repo repo) {
+            int file = repo._added++ % repo.files;
+            repo._repo.write(file);
+            _name = SyntheticRepo.fileName(file);
+        }
+    }
+
+    /** Before each commit, rewrite and add some files. */
+    @State(Scope.Thread)
+    public static class ToCommit {
+
+        /** Stage a churn's worth of changes in REPO. */
+        @Setup(Level.Invocation)
+        public void churn(Repo repo) {
+            repo._repo.churn(repo._repo.churnCount());
+        }
+    }
+
+    /** Before each merge, make a branch that needs a merge commit. */
+    @State(Scope.Thread)
+    public static class ToMerge {
+
+        /** Name of the branch to merge. */
+        private String _name;
+
+        /** Make the next branch of REPO. */
+        @Setup(Level.Invocation)
+        public void diverge(Repo repo) {
+            repo._merges += 1;
+            _name = "merge" + repo._merges;
+            repo._repo.diverge(_name, 2 * repo._merges);
+        }
+    }
+
+    /** Add one changed file. */
+    @Benchmark
+    public void add(Repo repo, ToAdd file) {
+        RepoFace.addCommand(file._name);
+    }
+
+    /** Commit the staged changes. */
+    @Benchmark
+    public void commit(Repo repo, ToCommit changes) {
+        RepoFace.commitCommand("benchmark commit");
+    }
+
+    /** Show the status. */
+    @Benchmark
+    public void status(Repo repo) {
+        RepoFace.statusCommand();
+    }
+
+    /** Check out the other branch, switching back and forth. */
+    @Benchmark
+    public void checkout(Repo repo) {
+        if (repo._branch == null) {
+            return;
+        }
+        RepoFace.checkoutCommandBRANCHNAME(repo._onBranch ? "master"
+                : repo._branch);
+        repo._onBranch = !repo._onBranch;
+    }
+
+    /** Reset to the head commit's parent, then back to it. */
+    @Benchmark
+    public void reset(Repo repo) {
+        RepoFace.resetCommand(repo._atParent ? repo._tip : repo._parent);
+        repo._atParent = !repo._atParent;
+    }
+
+    /** Merge a branch. */
+    @Benchmark
+    public void merge(Repo repo, ToMerge branch) {
+        RepoFace.mergeCommand(branch._name);
+    }
+
+    /** Print the whole log. */
+    @Benchmark
+    public void log(Repo repo) {
+        RepoFace.logCommand(Long.MAX_VALUE, 0, Long.MIN_VALUE);
+    }
+
+    /** Find the commits with one message. */
+    @Benchmark
+    public void find(Repo repo) {
+        RepoFace.findCommand(SyntheticRepo.message(1));
+    }
+}
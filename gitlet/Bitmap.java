@@ -0,0 +1,166 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** Class holding an immutable set of small integers as an EWAH
+ * compressed bitmap: the 64 bit words of the set, with runs of words
+ * that are all zeros or all ones replaced by a count.
+ * The words are grouped, each group being one marker word followed by
+ * literal words. Bit 0 of the marker is the value of the run, bits 1-32
+ * its length in words and bits 33-63 the number of literal words after
+ * it. Sets of reachable commits are long runs of ones with a few holes,
+ * so they shrink to a handful of words.
+ * @author Katrina Sharonin.*/
+final class Bitmap {
+
+    /** Longest run one marker holds. */
+    private static final long MAX_RUN = (1L << 32) - 1;
+
+    /** Most literal words after one marker. */
+    private static final long MAX_LITERALS = (1L << 31) - 1;
+
+    /** Encoded words. */
+    private final long[] _words;
+
+    /** Bitmap of the encoded WORDS. */
+    private Bitmap(long[] words) {
+        _words = words;
+    }
+
+    /** Return the bitmap of BITS.
+     * @return is the compressed bitmap.*/
+    static Bitmap of(BitSet bits) {
+        long[] plain = bits.toLongArray();
+        long[] encoded = new long[plain.length + plain.length / 2 + 1];
+        int size = 0;
+        int i = 0;
+        while (i < plain.length) {
+            long runValue = plain[i] == -1L ? -1L : 0L;
+            long run = 0;
+            while (i < plain.length && plain[i] == runValue
+                    && run < MAX_RUN) {
+                run += 1;
+                i += 1;
+            }
+            int literalsStart = i;
+            while (i < plain.length && plain[i] != 0 && plain[i] != -1L
+                    && i - literalsStart < MAX_LITERALS) {
+                i += 1;
+            }
+            int literals = i - literalsStart;
+            if (size + 1 + literals > encoded.length) {
+                encoded = Arrays.copyOf(encoded,
+                        Math.max(2 * encoded.length, size + 1 + literals));
+            }
+            encoded[size] = (runValue & 1) | run << 1
+                    | (long) literals << 33;
+            System.arraycopy(plain, literalsStart, encoded, size + 1,
+                    literals);
+            size += 1 + literals;
+        }
+        return new Bitmap(Arrays.copyOf(encoded, size));
+    }
+
+    /** Return the bitmap stored at the position of IN, moving past it.
+     * @return is the bitmap.*/
+    static Bitmap read(ByteBuffer in) {
+        long[] words = new long[in.getInt()];
+        in.asLongBuffer().get(words);
+        in.position(in.position() + words.length * Long.BYTES);
+        return new Bitmap(words);
+    }
+
+    /** Move IN past the bitmap at its position, without reading it. */
+    static void skip(ByteBuffer in) {
+        in.position(in.position() + Integer.BYTES
+                + in.getInt(in.position()) * Long.BYTES);
+    }
+
+    /** Append this bitmap to OUT. */
+    void write(ByteBuffer out) {
+        out.putInt(_words.length);
+        for (long word : _words) {
+            out.putLong(word);
+        }
+    }
+
+    /** Return the bytes write takes.
+     * @return is the size.*/
+    int byteSize() {
+        return Integer.BYTES + _words.length * Long.BYTES;
+    }
+
+    /** Return the set as plain bits.
+     * @return is a new bit set.*/
+    BitSet toBitSet() {
+        BitSet result = new BitSet();
+        orInto(result);
+        return result;
+    }
+
+    /** Add every member of this set to BITS. */
+    void orInto(BitSet bits) {
+        long word = 0;
+        for (int i = 0; i < _words.length; i += 1) {
+            long marker = _words[i];
+            long run = marker >>> 1 & MAX_RUN;
+            if ((marker & 1) != 0) {
+                bits.set(Math.toIntExact(word * Long.SIZE),
+                        Math.toIntExact((word + run) * Long.SIZE));
+            }
+            word += run;
+            for (long n = marker >>> 33; n > 0; n -= 1) {
+                i += 1;
+                long literal = _words[i];
+                while (literal != 0) {
+                    int bit = Long.numberOfTrailingZeros(literal);
+                    bits.set(Math.toIntExact(word * Long.SIZE + bit));
+                    literal &= literal - 1;
+                }
+                word += 1;
+            }
+        }
+    }
+
+    /** Return true if BIT is a member.
+     * @return is boolean.*/
+    boolean contains(int bit) {
+        long target = bit / Long.SIZE;
+        long word = 0;
+        for (int i = 0; i < _words.length && word <= target; i += 1) {
+            long marker = _words[i];
+            long run = marker >>> 1 & MAX_RUN;
+            if (target < word + run) {
+                return (marker & 1) != 0;
+            }
+            word += run;
+            long literals = marker >>> 33;
+            if (target < word + literals) {
+                long literal = _words[i + 1 + (int) (target - word)];
+                return (literal >>> (bit % Long.SIZE) & 1) != 0;
+            }
+            word += literals;
+            i += (int) literals;
+        }
+        return false;
+    }
+
+    /** Return the number of members.
+     * @return is the cardinality.*/
+    long cardinality() {
+        long result = 0;
+        for (int i = 0; i < _words.length; i += 1) {
+            long marker = _words[i];
+            if ((marker & 1) != 0) {
+                result += (marker >>> 1 & MAX_RUN) * Long.SIZE;
+            }
+            for (long n = marker >>> 33; n > 0; n -= 1) {
+                i += 1;
+                result += Long.bitCount(_words[i]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,327 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/** Class holding reachability bitmaps for selected commits: for each,
+ * the set of commits reachable from it (by commit-graph position) and
+ * the set of tree nodes and blobs those commits hold (by position in an
+ * object table of the file). A walk over history stops at any commit
+ * with bitmaps and ORs them in instead, so with bitmaps at every branch
+ * tip and every SPACING generations, ancestry checks and object counts
+ * touch only the few commits made since they were written.
+ * The file is optional: it is written by the bitmap command, and
+ * without it (or if the commit-graph was rebuilt since, which the
+ * epoch shows) walks simply go all the way.
+ * The file is 4 magic bytes, the long epoch of the commit-graph, then
+ * an int count and the 20 byte IDs of the object table, then an int
+ * count and for each selected commit its int position, commit bitmap
+ * and object bitmap (see Bitmap). Ancestry checks need only the
+ * commit bitmaps, so the object table and bitmaps are skipped unless
+ * objects are counted.
+ * @author Katrina Sharonin.*/
+final class Bitmaps {
+
+    /** Bitmaps file in gitlet folder.*/
+    static final File BITMAPS_FILE =
+            Utils.join(RepoFace.GITLET_FOLDER, "bitmaps");
+
+    /** Magic bytes starting the file, last one is version. */
+    private static final byte[] MAGIC = {'G', 'L', 'B', 1};
+
+    /** Generations between commits given bitmaps. */
+    static final int SPACING = 64;
+
+    /** Commit-graph the positions refer to. */
+    private final CommitGraph _graph;
+
+    /** Epoch of _graph the bitmaps were loaded for. */
+    private long _epoch;
+
+    /** Object table: the ID of each object position. */
+    private final List<String> _objects = new ArrayList<>();
+
+    /** Position of each object in the table, by ID. */
+    private final HashMap<String, Integer> _objectPositions =
+            new HashMap<>();
+
+    /** Reachable commits of each selected commit, by position. */
+    private final HashMap<Integer, Bitmap> _commitBitmaps = new HashMap<>();
+
+    /** Reachable objects of each selected commit, by position. */
+    private final HashMap<Integer, Bitmap> _objectBitmaps = new HashMap<>();
+
+    /** True while bitmaps are being written, when new objects join the
+     * table. */
+    private boolean _writing;
+
+    /** Bitmaps over GRAPH, none selected yet. */
+    private Bitmaps(CommitGraph graph) {
+        _graph = graph;
+        _epoch = graph.epoch();
+    }
+
+    /** Return the bitmaps of this repository, which are empty if none
+     * were written for the current commit-graph. The object table and
+     * object bitmaps are only read if OBJECTS.
+     * @return is the bitmaps.*/
+    static Bitmaps load(boolean objects) {
+        Bitmaps result = new Bitmaps(CommitGraph.get());
+        if (!BITMAPS_FILE.exists()) {
+            return result;
+        }
+        ByteBuffer in;
+        try (FileChannel file = FileChannel.open(BITMAPS_FILE.toPath())) {
+            in = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        byte[] magic = new byte[MAGIC.length];
+        if (in.limit() < MAGIC.length + Long.BYTES) {
+            return result;
+        }
+        in.get(magic);
+        if (!Arrays.equals(magic, MAGIC)
+                || in.getLong() != result._graph.epoch()) {
+            return result;
+        }
+        int tableSize = in.getInt();
+        if (objects) {
+            byte[] raw = new byte[PackFile.ID_BYTES];
+            for (int n = tableSize; n > 0; n -= 1) {
+                in.get(raw);
+                result.addToTable(ObjectStore.toHex(raw));
+            }
+        } else {
+            in.position(in.position() + tableSize * PackFile.ID_BYTES);
+        }
+        for (int n = in.getInt(); n > 0; n -= 1) {
+            int position = in.getInt();
+            result._commitBitmaps.put(position, Bitmap.read(in));
+            if (objects) {
+                result._objectBitmaps.put(position, Bitmap.read(in));
+            } else {
+                Bitmap.skip(in);
+            }
+        }
+        return result;
+    }
+
+    /** Write bitmaps for every branch tip and every commit whose
+     * generation is a multiple of SPACING, oldest first so each walk
+     * stops at the ones before it.
+     * @return is the number of commits given bitmaps.*/
+    static int write() {
+        Bitmaps result = new Bitmaps(CommitGraph.get());
+        result._writing = true;
+        CommitGraph graph = result._graph;
+        List<Integer> tips = branchTips(graph);
+        if (result.forgetIfRenumbered()) {
+            tips = branchTips(graph);
+        }
+        TreeSet<Integer> selected = new TreeSet<>(tips);
+        for (int position = 0; position < graph.size(); position += 1) {
+            if (graph.generation(position) % SPACING == 0) {
+                selected.add(position);
+            }
+        }
+        for (int position : selected) {
+            Reach reach = result.reach(List.of(position), true);
+            result._commitBitmaps.put(position, Bitmap.of(reach._commits));
+            result._objectBitmaps.put(position, Bitmap.of(reach._objects));
+        }
+        result.save();
+        return selected.size();
+    }
+
+    /** Return true if commit ANCESTORID is reachable from commit
+     * DESCENDANTID, or is it. The walk from DESCENDANTID stops at
+     * commits with bitmaps and skips commits of lower generation than
+     * ANCESTORID, which cannot lead to it. Only needs bitmaps loaded
+     * without objects.
+     * @return is boolean.*/
+    boolean isAncestor(String ancestorID, String descendantID) {
+        CommitGraph graph = _graph;
+        int ancestor = graph.position(ancestorID);
+        int descendant = graph.position(descendantID);
+        if (forgetIfRenumbered()) {
+            ancestor = graph.position(ancestorID);
+        }
+        if (ancestor == CommitGraph.NONE || descendant == CommitGraph.NONE) {
+            return false;
+        }
+        int floor = graph.generation(ancestor);
+        BitSet seen = new BitSet(graph.size());
+        Deque<Integer> work = new ArrayDeque<>();
+        work.push(descendant);
+        while (!work.isEmpty()) {
+            int position = work.pop();
+            if (position == ancestor) {
+                return true;
+            }
+            if (position == CommitGraph.NONE || seen.get(position)
+                    || graph.generation(position) < floor) {
+                continue;
+            }
+            seen.set(position);
+            Bitmap stored = _commitBitmaps.get(position);
+            if (stored != null) {
+                if (stored.contains(ancestor)) {
+                    return true;
+                }
+                continue;
+            }
+            work.push(graph.parent(position));
+            work.push(graph.secondParent(position));
+        }
+        return false;
+    }
+
+    /** Return the numbers of commits and of objects (tree nodes and
+     * blobs) reachable from any branch.
+     * @return is the two counts.*/
+    static long[] countReachable() {
+        Bitmaps bitmaps = load(true);
+        List<Integer> tips = branchTips(bitmaps._graph);
+        if (bitmaps.forgetIfRenumbered()) {
+            tips = branchTips(bitmaps._graph);
+        }
+        Reach reach = bitmaps.reach(tips, true);
+        return new long[] {reach._commits.cardinality(),
+            reach._objects.cardinality() + reach._extra.size()};
+    }
+
+    /** Return what is reachable from the commits at STARTS, with the
+     * objects too if OBJECTS.
+     * @return is the reach.*/
+    private Reach reach(Collection<Integer> starts, boolean objects) {
+        Reach result = new Reach();
+        Deque<Integer> work = new ArrayDeque<>(starts);
+        while (!work.isEmpty()) {
+            int position = work.pop();
+            if (position == CommitGraph.NONE
+                    || result._commits.get(position)) {
+                continue;
+            }
+            Bitmap stored = _commitBitmaps.get(position);
+            if (stored != null) {
+                stored.orInto(result._commits);
+                if (objects) {
+                    _objectBitmaps.get(position).orInto(result._objects);
+                }
+                continue;
+            }
+            result._commits.set(position);
+            if (objects) {
+                Commit.getCommitFromFile(_graph.id(position))
+                        .addObjects(result::addObject);
+            }
+            work.push(_graph.parent(position));
+            work.push(_graph.secondParent(position));
+        }
+        return result;
+    }
+
+    /** Drop the loaded bitmaps if looking up a commit missing from the
+     * commit-graph has rebuilt it since they were loaded, as that may
+     * renumber the commits they hold. Walks then go by the graph
+     * alone. Call after looking up positions, before using them;
+     * positions looked up before the rebuild must be looked up again.
+     * @return is true if the bitmaps were dropped.*/
+    private boolean forgetIfRenumbered() {
+        if (_graph.epoch() == _epoch) {
+            return false;
+        }
+        _commitBitmaps.clear();
+        _objectBitmaps.clear();
+        _epoch = _graph.epoch();
+        return true;
+    }
+
+    /** Return the positions of every branch tip in GRAPH.
+     * @return is the positions.*/
+    private static List<Integer> branchTips(CommitGraph graph) {
+        List<Integer> result = new ArrayList<>();
+        for (String branchName
+                : Utils.plainFilenamesIn(RepoFace.BRANCHES_FOLDER)) {
+            result.add(graph.position(
+                    Branches.getBranchFromFile(branchName).getCommitID()));
+        }
+        return result;
+    }
+
+    /** Add object ID at the end of the table.
+     * @return is its position.*/
+    private int addToTable(String id) {
+        int position = _objects.size();
+        _objects.add(id);
+        _objectPositions.put(id, position);
+        return position;
+    }
+
+    /** Write the bitmaps file. */
+    private void save() {
+        int size = MAGIC.length + Long.BYTES + 2 * Integer.BYTES
+                + _objects.size() * PackFile.ID_BYTES;
+        for (int position : _commitBitmaps.keySet()) {
+            size += Integer.BYTES + _commitBitmaps.get(position).byteSize()
+                    + _objectBitmaps.get(position).byteSize();
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(MAGIC).putLong(_graph.epoch()).putInt(_objects.size());
+        for (String id : _objects) {
+            out.put(PackFile.fromHex(id));
+        }
+        out.putInt(_commitBitmaps.size());
+        for (int position : _commitBitmaps.keySet()) {
+            out.putInt(position);
+            _commitBitmaps.get(position).write(out);
+            _objectBitmaps.get(position).write(out);
+        }
+        File temp = new File(BITMAPS_FILE.getPath() + ".tmp");
+        Utils.writeContents(temp, (Object) out.array());
+        ObjectStore.moveIntoPlace(temp, BITMAPS_FILE);
+    }
+
+    /** Commits and objects found by one walk. */
+    private final class Reach {
+
+        /** Reachable commits, by position. */
+        private final BitSet _commits = new BitSet();
+
+        /** Reachable objects in the table, by position. */
+        private final BitSet _objects = new BitSet();
+
+        /** Reachable objects not in the table. */
+        private final HashSet<String> _extra = new HashSet<>();
+
+        /** Add object ID, putting it in the table while bitmaps are
+         * being written.
+         * @return is false if it was reachable already.*/
+        boolean addObject(String id) {
+            Integer position = _objectPositions.get(id);
+            if (position == null && !_writing) {
+                return _extra.add(id);
+            } else if (position == null) {
+                position = addToTable(id);
+            }
+            if (_objects.get(position)) {
+                return false;
+            }
+            _objects.set(position);
+            return true;
+        }
+    }
+}
@@ -2,6 +2,10 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 
 /** Class representing a BLOB; contents of file which format
  * does not matter to system. Be able to connect BLOB to Name of file.
@@ -10,6 +14,10 @@ import java.io.Serializable;
 
 public class Blob implements Serializable {
 
+    /** Pinned so blobs serialized before the raw object format existed
+     * can still be read back for migration. */
+    private static final long serialVersionUID = 1450816514201058571L;
+
     /** Literal name of source file passed in i.e. Hello.txt.*/
     private final String _sourceFileName;
 
@@ -23,18 +31,45 @@ public class Blob implements Serializable {
      * name of hash. */
     private final File _writtenBlob;
 
-    /** Serialized content as a byte array.*/
-    private final byte[] _blobContent;
+    /** Serialized content as a byte array. Left null for blobs made
+     * from a working file until the content is actually asked for.*/
+    private byte[] _blobContent;
 
-    /** Main constructor taking in SOURCE.*/
+    /** Main constructor taking in SOURCE. Only the hash is computed,
+     * streaming over the file, so building a blob of a large file
+     * costs constant memory.*/
     public Blob(File source) {
-        this._blobContent = Utils.readContents(source);
+        this._blobContent = null;
+        this._sourceOfBlob = source;
+        this._blobID = ObjectStore.sha1(source);
+        this._writtenBlob = ObjectStore.shardFile(RepoFace.BLOBS_FOLDER,
+                this._blobID);
+        this._sourceFileName = source.getName();
+    }
+
+    /** Constructor for a blob of SOURCE whose hash BLOBID is already
+     * known, as from the stat cache of the index.*/
+    public Blob(File source, String blobID) {
+        this._blobContent = null;
         this._sourceOfBlob = source;
-        this._blobID = Utils.sha1(this._blobContent);
-        this._writtenBlob = searchBlobFile(this._blobID);
+        this._blobID = blobID;
+        this._writtenBlob = ObjectStore.shardFile(RepoFace.BLOBS_FOLDER,
+                blobID);
         this._sourceFileName = source.getName();
     }
 
+    /** Constructor for a blob read back from the object store.
+     * @param blobID is the hash the blob is stored under.
+     * @param content is the raw content.*/
+    private Blob(String blobID, byte[] content) {
+        this._blobContent = content;
+        this._sourceOfBlob = null;
+        this._blobID = blobID;
+        this._writtenBlob = ObjectStore.shardFile(RepoFace.BLOBS_FOLDER,
+                blobID);
+        this._sourceFileName = null;
+    }
+
     /** Return the Hash of the BLOB. BLOB hash is purely
      * based on the contents of the file
      * @return string is blob ID.*/
@@ -42,21 +77,131 @@ public class Blob implements Serializable {
         return this._blobID;
     }
 
-    /** Function that returns file location of blob in folder.
+    /** Function that returns file location of blob in folder,
+     * sharded or, in older repositories, flat.
      * Assumes that the file
      * exists when called. DO ERROR CATCHING BEFORE FUNCTION USED.
      * @param hashID is inputted hash ID of blob.
      * @return is file from blob ID.*/
     public static File searchBlobFile(String hashID) {
-        File search = Utils.join(RepoFace.BLOBS_FOLDER, hashID);
+        File search = ObjectStore.looseFile(RepoFace.BLOBS_FOLDER, hashID);
         return search;
 
     }
 
-    /** Use LOCATION to give back deserialized blob.
+    /** Return true if the blob with HASHID is stored, in a pack or as
+     * a loose file.
+     * @return is boolean.*/
+    public static boolean exists(String hashID) {
+        return PackFile.contains(hashID, ObjectStore.BLOB_TYPES)
+                || searchBlobFile(hashID).exists();
+    }
+
+    /** Give back the blob with HASHID, looking in packs before the
+     * loose file.
+     * @return is actual blob object.*/
+    public static Blob readBlob(String hashID) {
+        if (!PackFile.contains(hashID, ObjectStore.BLOB_TYPES)
+                && ObjectStore.isLegacy(searchBlobFile(hashID))) {
+            return readBlobFromFile(searchBlobFile(hashID));
+        }
+        return new Blob(hashID, readContent(hashID));
+    }
+
+    /** Return the content of the blob with HASHID, rebuilding it from
+     * its delta chain if it is stored as a delta. The content, and every
+     * version rebuilt on the way, goes into ObjectCache, so later reads
+     * of the same chain (as when checking out many versions of one file)
+     * start from there.
+     * @return is the content.*/
+    static byte[] readContent(String hashID) {
+        Deque<byte[]> deltas = new ArrayDeque<>();
+        Deque<String> deltaIDs = new ArrayDeque<>();
+        String current = hashID;
+        byte[] content = ObjectCache.get(current);
+        while (content == null) {
+            ObjectStore.RawObject stored = ObjectStore.readStored(current,
+                    RepoFace.BLOBS_FOLDER, ObjectStore.BLOB_TYPE,
+                    ObjectStore.DELTA_TYPE);
+            if (stored.type() == ObjectStore.BLOB_TYPE) {
+                content = stored.content();
+                ObjectCache.put(current, content);
+            } else {
+                deltas.push(stored.content());
+                deltaIDs.push(current);
+                current = ObjectStore.toHex(Arrays.copyOf(stored.content(),
+                        PackFile.ID_BYTES));
+                content = ObjectCache.get(current);
+            }
+        }
+        while (!deltas.isEmpty()) {
+            content = Delta.apply(content, deltas.pop(), PackFile.ID_BYTES);
+            ObjectCache.put(deltaIDs.pop(), content);
+        }
+        return content;
+    }
+
+    /** Use LOCATION to give back blob. Blobs written before the raw
+     * object format are still deserialized.
      * @return is actual blob object.*/
     public static Blob readBlobFromFile(File location) {
-        return Utils.readObject(location, Blob.class);
+        if (ObjectStore.isLegacy(location)) {
+            return Utils.readObject(location, Blob.class);
+        }
+        return new Blob(ObjectStore.looseID(location),
+                ObjectStore.readContent(location, ObjectStore.BLOB_TYPE));
+    }
+
+    /** Write this blob into BLOBS_FOLDER as header and raw content.
+     * Only content is stored, so identical contents under different
+     * file names share one object. Blobs of working files are copied
+     * straight from the file rather than through memory. */
+    public void saveBlob() {
+        if (this._blobContent == null) {
+            ObjectStore.writeObjectFrom(this._writtenBlob,
+                    ObjectStore.BLOB_TYPE, this._sourceOfBlob);
+        } else {
+            ObjectStore.writeObject(this._writtenBlob,
+                    ObjectStore.BLOB_TYPE, this._blobContent);
+        }
+    }
+
+    /** Write the content of the blob with BLOBID into DEST, overwriting
+     * it. Content is streamed from the object file, never loaded whole.
+     * @param blobID is hash of the wanted blob.
+     * @param dest is the working file to write.*/
+    public static void writeBlobTo(String blobID, File dest) {
+        if (ObjectStore.typeOf(blobID, RepoFace.BLOBS_FOLDER,
+                ObjectStore.BLOB_TYPES) == ObjectStore.DELTA_TYPE) {
+            Utils.writeContents(dest, readContent(blobID));
+            return;
+        }
+        ByteBuffer packed = PackFile.find(blobID, ObjectStore.BLOB_TYPE);
+        if (packed != null) {
+            ObjectStore.copyContentTo(packed, ObjectStore.BLOB_TYPE, dest);
+            return;
+        }
+        File location = searchBlobFile(blobID);
+        if (ObjectStore.isLegacy(location)) {
+            Utils.writeContents(dest,
+                    readBlobFromFile(location).getBlobContent());
+        } else {
+            ObjectStore.copyContentTo(location, ObjectStore.BLOB_TYPE,
+                    dest);
+        }
+    }
+
+    /** Rewrite blob file LOCATION in the raw object format if it is
+     * still a serialized blob.
+     * @return is true if the file was rewritten.*/
+    public static boolean migrateBlobFile(File location) {
+        if (!ObjectStore.isLegacy(location)) {
+            return false;
+        }
+        Blob legacy = Utils.readObject(location, Blob.class);
+        ObjectStore.writeObject(location, ObjectStore.BLOB_TYPE,
+                legacy.getBlobContent());
+        return true;
     }
 
     /** Return saved/persisted location of the blob file.
@@ -73,8 +218,11 @@ public class Blob implements Serializable {
     }
 
     /** Return raw contents aka serialized
-     * information from source file. */
+     * information from source file. Reads the source on first use. */
     public byte[] getBlobContent() {
+        if (this._blobContent == null) {
+            this._blobContent = Utils.readContents(this._sourceOfBlob);
+        }
         return this._blobContent;
     }
 }
@@ -1,18 +1,23 @@
 package gitlet;
 
-import java.io.IOException;
 import java.io.Serializable;
 import java.io.File;
 
 /** Class representing branches as file form. Previously constructed as
  * Tree map, this will now store as a file ("master" <-> commit hash).
+ * The file holds nothing but the commit hash as text; the commit itself
+ * is read from the object store when asked for. Branch files of older
+ * gitlets, which held a serialized Branches, are still read.
  * @author Katrina Sharonin.*/
 public class Branches implements Serializable {
 
+    /** Pinned so serialized branches of older gitlets stay readable. */
+    private static final long serialVersionUID = 3641528411183308665L;
+
     /** Name of branch.*/
     private final String _name;
-    /** Current commit of branch.*/
-    private Commit _currCommittt;
+    /** Current commit of branch, loaded on first use. Never stored.*/
+    private transient Commit _currCommittt;
     /** Commit ID of current commit.*/
     private String _commitID;
 
@@ -33,18 +38,20 @@ public class Branches implements Serializable {
         this._commitID = _currCommittt.getID();
     }
 
+    /** Constructor for a branch read back from its file.
+     * @param branchName is the name of the branch.
+     * @param commitID is the hash of its commit.*/
+    private Branches(String branchName, String commitID) {
+        this._name = branchName;
+        this._commitID = commitID;
+        this._currCommittt = null;
+    }
+
     /** Function writing into BRANCHES_FOLDER. Create file that is
-     * named by _name if not already existent. */
+     * named by _name if not already existent, holding the commit ID. */
     public void saveBranch() {
         File saveHere = Utils.join(RepoFace.BRANCHES_FOLDER, this._name);
-        try {
-            if (!saveHere.exists()) {
-                saveHere.createNewFile();
-            }
-            Utils.writeObject(saveHere, this);
-        } catch (IOException error) {
-            System.exit(0);
-        }
+        Utils.writeContents(saveHere, this._commitID);
     }
 
     /** Write in the new branches object into the CURRENT_BRANCH folder.
@@ -65,15 +72,47 @@ public class Branches implements Serializable {
             return null;
         }
 
-        Branches found = Utils.readObject(branchFileFound, Branches.class);
-        return found;
+        return readBranchFile(branchFileFound);
+    }
+
+    /** Read the branch stored in BRANCHFILE, a commit ID or, from an
+     * older gitlet, a serialized branch.
+     * @return is the branch.*/
+    static Branches readBranchFile(File branchFile) {
+        if (ObjectStore.isLegacy(branchFile)) {
+            return Utils.readObject(branchFile, Branches.class);
+        }
+        return new Branches(branchFile.getName(),
+                Utils.readContentsAsString(branchFile).trim());
+    }
+
+    /** Rewrite branch file BRANCHFILE as a bare commit ID if it still
+     * holds a serialized branch.
+     * @return is true if the file was rewritten.*/
+    static boolean migrateBranchFile(File branchFile) {
+        if (!ObjectStore.isLegacy(branchFile)) {
+            return false;
+        }
+        Utils.writeContents(branchFile,
+                readBranchFile(branchFile)._commitID);
+        return true;
     }
 
-    /** Function which returns the current commit of this branch.*/
+    /** Function which returns the current commit of this branch,
+     * reading it from the object store the first time.*/
     public Commit getCurrCommit() {
+        if (_currCommittt == null) {
+            _currCommittt = Commit.getCommitFromFile(_commitID);
+        }
         return _currCommittt;
     }
 
+    /** Function which returns the commit ID of this branch.
+     * @return is the commit hash.*/
+    public String getCommitID() {
+        return this._commitID;
+    }
+
     /** Function which returns the name of this branch.*/
     public String getBranchName() {
         return this._name;
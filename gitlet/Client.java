@@ -0,0 +1,124 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Thin client running a command in the daemon of the repository in
+ * the working directory (see Daemon), or in its own JVM as Main does
+ * when no daemon answers. Forwarding loads none of the repository
+ * classes, so the client starts about as fast as a JVM can.
+ * A request is the number of arguments followed by each, as an int
+ * length and UTF-8 bytes. The reply is a series of frames, each a
+ * kind byte: OUT and ERR are followed by an int length and that many
+ * bytes for standard output or error, EXIT by the int exit code,
+ * which ends the reply.
+ * @author Katrina Sharonin.*/
+public final class Client {
+
+    /** Name of the daemon socket in the gitlet folder. */
+    static final String SOCKET_NAME = "daemon.sock";
+
+    /** Frame kind ending a reply. */
+    static final byte EXIT = 0;
+
+    /** Frame kind carrying standard output. */
+    static final byte OUT = 1;
+
+    /** Frame kind carrying standard error. */
+    static final byte ERR = 2;
+
+    /** Not instantiated; static functions only. */
+    private Client() {
+    }
+
+    /** Run the command given by ARGS in the daemon if one is running,
+     * else here, exiting with its exit code either way. A batch read
+     * from standard input always runs here, as the daemon cannot see
+     * it.
+     * @param args is input from user.*/
+    public static void main(String... args) {
+        boolean readsInput = args.length > 0 && args[0].equals("batch")
+                && (args.length == 1
+                    || args.length == 2 && args[1].equals("--add"));
+        int code = readsInput ? -1 : forward(args);
+        if (code < 0) {
+            Main.main(args);
+        }
+        System.exit(code);
+    }
+
+    /** Send ARGS to the daemon of the repository in the working
+     * directory, copying what it prints to System.out and System.err.
+     * @return is the exit code of the command, or -1 if no daemon
+     * answers.*/
+    static int forward(String... args) {
+        Path socket = Path.of(System.getProperty("user.dir"), ".gitlet",
+                SOCKET_NAME);
+        if (!Files.exists(socket)) {
+            return -1;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException excp) {
+            return -1;
+        }
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Channels.newOutputStream(channel)));
+            writeStrings(request, args);
+            request.flush();
+            DataInputStream reply = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel),
+                            1 << 16));
+            while (true) {
+                byte kind = reply.readByte();
+                if (kind == EXIT) {
+                    System.out.flush();
+                    System.err.flush();
+                    return reply.readInt();
+                }
+                byte[] data = new byte[reply.readInt()];
+                reply.readFully(data);
+                PrintStream to = kind == OUT ? System.out : System.err;
+                to.write(data, 0, data.length);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write STRINGS to OUT as a request. */
+    static void writeStrings(DataOutputStream out, String... strings)
+        throws IOException {
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** Read a request from IN.
+     * @return is the strings it holds.*/
+    static String[] readStrings(DataInputStream in) throws IOException {
+        String[] result = new String[in.readInt()];
+        for (int i = 0; i < result.length; i += 1) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            result[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+}
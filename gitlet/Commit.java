@@ -1,13 +1,17 @@
 package gitlet;
 
 import java.io.File;
-import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.Locale;
+import java.util.function.Predicate;
 
 /** Class representing a COMMIT object. Commit contains several
  * components which must all be considered and tied.
@@ -15,6 +19,13 @@ import java.util.Locale;
 
 public class Commit implements Serializable {
 
+    /** Pinned so commits written before the object format existed
+     * can still be read back. */
+    private static final long serialVersionUID = 5098523800070274048L;
+
+    /** Most matching IDs listed for an ambiguous abbreviation. */
+    private static final int AMBIGUOUS_SHOWN = 10;
+
     /** Passed in message of this commit instance.*/
     private final String _message;
 
@@ -24,9 +35,22 @@ public class Commit implements Serializable {
     /** Unique SHA-1 ID using commit components.*/
     private final String _ID;
 
-    /** Existing snapshot of our files tracked.*/
+    /** Existing snapshot of our files tracked. Only set in commits
+     * written before snapshots were stored as trees.*/
     private final TreeMap<String, String> _snapshot;
 
+    /** ID of the root of the tree holding the snapshot (see Tree).*/
+    private final String _tree;
+
+    /** Snapshot made from _snapshot on first use, for commits written
+     * before trees. Snapshots of trees are kept by Tree instead, so
+     * commits in ObjectCache do not hold on to them.*/
+    private transient volatile Snapshot _oldSnapshot;
+
+    /** Tree written for _snapshot on first request, for commits written
+     * before trees.*/
+    private transient volatile String _oldTree;
+
     /** Hash ID of direct parent.*/
     private final String _parentLink;
 
@@ -36,35 +60,49 @@ public class Commit implements Serializable {
     /** File location of written in commit.*/
     private final File _location;
 
-    public Commit(String message, TreeMap<String, String> tracking,
+    public Commit(String message, Map<String, String> tracking,
+                  String ancestors, String directParent) {
+        this(message, Tree.write(tracking), ancestors, directParent);
+    }
+
+    /** Constructor for a commit whose snapshot is already stored.
+     * @param message is the commit message.
+     * @param treeID is the root of the snapshot tree.
+     * @param ancestors is the second parent hash.
+     * @param directParent is the first parent hash.*/
+    public Commit(String message, String treeID,
                   String ancestors, String directParent) {
         this._message = message;
         this._date = new Date();
-        this._snapshot = tracking;
+        this._snapshot = null;
+        this._tree = treeID;
         this._secondParentLink = ancestors;
         this._ID = commitHashResult();
         this._parentLink = directParent;
-        this._location = Utils.join(RepoFace.COMMITS_FOLDER, this._ID);
+        this._location = ObjectStore.shardFile(RepoFace.COMMITS_FOLDER,
+                this._ID);
     }
 
     /** Alternative constructor for the initial commit. */
     public Commit() {
         this._message = "initial commit";
         this._secondParentLink = "";
-        this._snapshot = new TreeMap<>();
+        this._snapshot = null;
+        this._tree = Tree.write(new TreeMap<>());
         this._date = new Date(0);
         this._ID = commitHashResult();
         this._parentLink = null;
-        this._location = Utils.join(RepoFace.COMMITS_FOLDER, this._ID);
+        this._location = ObjectStore.shardFile(RepoFace.COMMITS_FOLDER,
+                this._ID);
     }
 
     /** Generates a unique SHA-ID using the unique components of a commit.
-     * message, date/time, tree map of relations, and parents.
+     * message, date/time, snapshot tree, and parents.
      * @return resulting hash of a commit object.*/
     public String commitHashResult() {
 
         String ancestorsInForm = this._secondParentLink;
-        String snapshotInForm = this._snapshot.toString();
+        String snapshotInForm = this._tree;
         String metaDataFormed = getMetaData();
         String idFormed = Utils.sha1(ancestorsInForm,
                 this._message, metaDataFormed, snapshotInForm);
@@ -79,6 +117,12 @@ public class Commit implements Serializable {
         return formmated.format(_date);
     }
 
+    /** Access function due to privacy of variables.
+     * @return is the time of the commit in milliseconds.*/
+    public long getTime() {
+        return this._date.getTime();
+    }
+
     /** Access function due to privacy of variables.
      * @return is the message of the commit.*/
     public String getMssg() {
@@ -91,10 +135,54 @@ public class Commit implements Serializable {
         return this._ID;
     }
 
-    /** Access function due to privacy of variables.
-     * @return Accessed tree map from commit. */
-    public TreeMap<String, String> getSnapshot() {
-        return this._snapshot;
+    /** Access function due to privacy of variables. The snapshot is
+     * read from its tree the first time it is asked for. It cannot be
+     * changed; a changed copy is made with Snapshot.edit.
+     * @return Accessed snapshot from commit. */
+    public Snapshot getSnapshot() {
+        if (this._snapshot == null) {
+            return Tree.read(this._tree);
+        }
+        if (this._oldSnapshot == null) {
+            this._oldSnapshot = Snapshot.of(this._snapshot);
+        }
+        return this._oldSnapshot;
+    }
+
+    /** Return the ID of the tree holding this commit's snapshot. Older
+     * commits have none, so theirs is written on first request.
+     * @return is the root tree ID.*/
+    public String getTree() {
+        if (this._tree != null) {
+            return this._tree;
+        }
+        if (this._oldTree == null) {
+            this._oldTree = Tree.write(this._snapshot);
+        }
+        return this._oldTree;
+    }
+
+    /** Offer the ID of every object this commit's snapshot is made of
+     * to ADD, as Tree.addObjects does. Older commits have no tree, so
+     * only their blobs are offered, and nothing is written. */
+    public void addObjects(Predicate<String> add) {
+        if (this._tree != null) {
+            Tree.addObjects(this._tree, add);
+            return;
+        }
+        for (String blobID : this._snapshot.values()) {
+            add.test(blobID);
+        }
+    }
+
+    /** Return the blob ID FILENAME is tracked with in this commit, or
+     * null if it is not tracked. Reads only the tree nodes on the way.
+     * @return is the blob ID.*/
+    public String trackedBlob(String fileName) {
+        if (this._snapshot != null) {
+            return this._snapshot.get(fileName);
+        }
+        return Tree.lookup(this._tree, fileName);
     }
 
     /** Access function due to privacy of variables.
@@ -111,40 +199,125 @@ public class Commit implements Serializable {
 
 
     /** Write commit object into a file. Use self instance.
-     * Check is location DNE -> make if not */
+     * The serialized commit is stored as the content of a commit
+     * object, so it is compressed like any other object, and the
+     * commit is added to the commit-graph, the message index and the
+     * search index. It is kept in ObjectCache, as it is often read
+     * back at once. */
+    @SuppressWarnings("try")
     public void saveCommit() {
-        try {
-            if (!_location.exists()) {
-                _location.createNewFile();
+        byte[] content = Utils.serialize(this);
+        ObjectStore.writeObject(_location, ObjectStore.COMMIT_TYPE,
+                content);
+        ObjectCache.put(_ID, this, content.length);
+        try (Trace.Span span = Trace.span("commit-graph")) {
+            CommitGraph.append(this);
+        }
+        try (Trace.Span span = Trace.span("message index")) {
+            MessageIndex.add(this);
+        }
+        try (Trace.Span span = Trace.span("search index")) {
+            SearchIndex.add(this);
+        }
+    }
+
+    /** Return true if the commit with HASHID is stored, in a pack or
+     * as a loose file.
+     * @return is boolean.*/
+    public static boolean exists(String hashID) {
+        return PackFile.contains(hashID, ObjectStore.COMMIT_TYPE)
+                || ObjectStore.looseFile(RepoFace.COMMITS_FOLDER, hashID)
+                .exists();
+    }
+
+    /** Return the full ID of the one commit whose ID starts with
+     * PREFIX. Prints the usual message and exits if there is none; if
+     * there are several, lists some of them and exits.
+     * @return is the commit ID.*/
+    public static String resolveID(String prefix) {
+        List<String> found = ObjectStore.idsWithPrefix(
+                ObjectStore.COMMIT_TYPE, RepoFace.COMMITS_FOLDER, prefix,
+                AMBIGUOUS_SHOWN);
+        if (found.isEmpty()) {
+            System.out.println("No commit with that id exists.");
+            Main.exit();
+        }
+        if (found.size() > 1) {
+            System.out.println("Commit id " + prefix + " is ambiguous; "
+                    + "it could be:");
+            for (String id : found) {
+                System.out.println(id);
             }
-            Utils.writeObject(_location, this);
+            Main.exit();
+        }
+        return found.get(0);
+    }
 
-        } catch (IOException error) {
-            System.exit(0);
+    /** Return the IDs of every commit, packed or loose, in order.
+     * @return is the sorted list of IDs.*/
+    public static List<String> allCommitIDs() {
+        return ObjectStore.allIDs(ObjectStore.COMMIT_TYPE,
+                RepoFace.COMMITS_FOLDER);
+    }
+
+    /** Rewrite commit file LOCATION as a commit object if it is still
+     * a bare serialized commit.
+     * @return is true if the file was rewritten.*/
+    public static boolean migrateCommitFile(File location) {
+        if (!ObjectStore.isLegacy(location)) {
+            return false;
         }
+        ObjectStore.writeObject(location, ObjectStore.COMMIT_TYPE,
+                Utils.readContents(location));
+        return true;
     }
 
     /** Function which prints object in proper order following spec.
-     * @param curr is the current commit object to print.*/
-    public static void printCommitObject(Commit curr) {
-        System.out.println("===");
-        System.out.println("commit " +  curr.getID());
-        System.out.println("Date: " + curr.getMetaData());
-        System.out.println(curr.getMssg());
-        System.out.println();
+     * @param curr is the current commit object to print.
+     * @param out is the stream printed to.*/
+    public static void printCommitObject(Commit curr, PrintStream out) {
+        out.println("===");
+        out.println("commit " +  curr.getID());
+        out.println("Date: " + curr.getMetaData());
+        out.println(curr.getMssg());
+        out.println();
     }
 
     /** Deserialize aka read commit object from file.
-     * HASHID is input of commit ID.
+     * HASHID is input of commit ID. Commits read are kept in
+     * ObjectCache and shared by later reads.
      * @return commit from file.*/
     public static Commit getCommitFromFile(String hashID) {
-        File matchingFile = Utils.join(RepoFace.COMMITS_FOLDER, hashID);
+        Commit result = ObjectCache.get(hashID, Commit.class);
+        if (result != null) {
+            return result;
+        }
+        byte[] content;
+        ByteBuffer packed = PackFile.find(hashID, ObjectStore.COMMIT_TYPE);
+        if (packed != null) {
+            content = ObjectStore.readContent(packed,
+                    ObjectStore.COMMIT_TYPE);
+            result = Utils.deserialize(content, Commit.class);
+            ObjectCache.put(hashID, result, content.length);
+            return result;
+        }
+        File matchingFile = ObjectStore.looseFile(RepoFace.COMMITS_FOLDER,
+                hashID);
 
         if (!matchingFile.exists()) {
             System.out.println("No commit with that id exists.");
-            System.exit(0);
+            Main.exit();
 
         }
-        return Utils.readObject(matchingFile, Commit.class);
+        if (ObjectStore.isLegacy(matchingFile)) {
+            result = Utils.readObject(matchingFile, Commit.class);
+            ObjectCache.put(hashID, result, matchingFile.length());
+            return result;
+        }
+        content = ObjectStore.readContent(matchingFile,
+                ObjectStore.COMMIT_TYPE);
+        result = Utils.deserialize(content, Commit.class);
+        ObjectCache.put(hashID, result, content.length);
+        return result;
     }
 }
@@ -0,0 +1,357 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Class holding the parent links of every commit in one compact file,
+ * so history can be walked without reading commit objects.
+ * The file is 4 magic bytes and a long epoch followed by one fixed
+ * RECORD_SIZE record per commit: its 20 byte ID, the positions of its
+ * first and second parent (-1 for none), its generation number (1 for
+ * a root, else one more than its highest parent) and its time in
+ * milliseconds. Parents always come before their children, so a
+ * commit is simply appended when it is saved, and the records are in
+ * the order commits were made; global-log streams them backwards for
+ * newest first. A repository without the file, or whose file misses
+ * a commit, gets it rebuilt from the commit objects, oldest first.
+ * Rebuilding may renumber commits, so it picks a new epoch; files
+ * keyed by position (see Bitmaps) record the epoch they were made for.
+ * @author Katrina Sharonin.*/
+final class CommitGraph {
+
+    /** Commit-graph file in gitlet folder.*/
+    static final File GRAPH_FILE =
+            Utils.join(RepoFace.GITLET_FOLDER, "commit-graph");
+
+    /** Magic bytes starting the file, last one is version. */
+    private static final byte[] MAGIC = {'G', 'L', 'C', 2};
+
+    /** Bytes in front of the first record. */
+    private static final int HEADER = MAGIC.length + Long.BYTES;
+
+    /** Bytes in each record. */
+    static final int RECORD_SIZE = PackFile.ID_BYTES + 3 * Integer.BYTES
+            + Long.BYTES;
+
+    /** Parent position meaning there is no such parent. */
+    static final int NONE = -1;
+
+    /** The graph of this repository, loaded on first use. */
+    private static CommitGraph graph;
+
+    /** All records, in file order. */
+    private ByteBuffer _records;
+
+    /** Number of records. */
+    private int _count;
+
+    /** Epoch of the file, changed whenever positions may change. */
+    private long _epoch;
+
+    /** Position of each commit, by hex ID, filled on first lookup so
+     * that walking the records alone costs no memory. */
+    private HashMap<String, Integer> _positions;
+
+    /** Graph of EPOCH over the records in RECORDS. */
+    private CommitGraph(ByteBuffer records, long epoch) {
+        _records = records;
+        _epoch = epoch;
+        _count = records.limit() / RECORD_SIZE;
+    }
+
+    /** Return a graph over RECORDS, laid out as in the file after its
+     * header, that is kept in memory only.
+     * @return is the graph.*/
+    static CommitGraph of(ByteBuffer records) {
+        return new CommitGraph(records, 0);
+    }
+
+    /** Return the graph of this repository, reading or building it
+     * the first time.
+     * @return is the graph.*/
+    static CommitGraph get() {
+        if (graph == null) {
+            graph = GRAPH_FILE.exists() ? read() : rebuild();
+        }
+        return graph;
+    }
+
+    /** Forget the loaded graph so the next use rereads the file. */
+    static void reload() {
+        graph = null;
+    }
+
+    /** Return the position of the commit with hex ID, rebuilding the
+     * graph once if it is missing, or NONE if there is no such commit.
+     * @return is the position.*/
+    int position(String id) {
+        Integer position = positions().get(id);
+        if (position == null && Commit.exists(id)) {
+            copyFrom(rebuild());
+            graph = this;
+            position = positions().get(id);
+        }
+        return position == null ? NONE : position;
+    }
+
+    /** Return the hex ID of the commit at POSITION.
+     * @return is the ID.*/
+    String id(int position) {
+        byte[] raw = new byte[PackFile.ID_BYTES];
+        _records.get(position * RECORD_SIZE, raw);
+        return ObjectStore.toHex(raw);
+    }
+
+    /** Return the position of the first parent of the commit at
+     * POSITION, or NONE.
+     * @return is the parent position.*/
+    int parent(int position) {
+        return _records.getInt(position * RECORD_SIZE + PackFile.ID_BYTES);
+    }
+
+    /** Return the position of the second parent of the commit at
+     * POSITION, or NONE.
+     * @return is the parent position.*/
+    int secondParent(int position) {
+        return _records.getInt(position * RECORD_SIZE + PackFile.ID_BYTES
+                + Integer.BYTES);
+    }
+
+    /** Return the generation number of the commit at POSITION.
+     * @return is the generation.*/
+    int generation(int position) {
+        return _records.getInt(position * RECORD_SIZE + PackFile.ID_BYTES
+                + 2 * Integer.BYTES);
+    }
+
+    /** Return the time of the commit at POSITION.
+     * @return is milliseconds since the epoch.*/
+    long time(int position) {
+        return _records.getLong(position * RECORD_SIZE + PackFile.ID_BYTES
+                + 3 * Integer.BYTES);
+    }
+
+    /** Number of commits in the graph.
+     * @return is the count.*/
+    int size() {
+        return _count;
+    }
+
+    /** Epoch of the graph; positions only keep their meaning while it
+     * does not change.
+     * @return is the epoch.*/
+    long epoch() {
+        return _epoch;
+    }
+
+    /** Add COMMIT, just saved, to the graph file. Its parents must be
+     * saved already. Only the new record is written; the loaded graph
+     * is dropped, and the next use maps the file again. */
+    static void append(Commit commit) {
+        CommitGraph current = get();
+        int[] parents = current.parentsOf(commit);
+        if (parents == null) {
+            return;
+        }
+        ByteBuffer record = current.record(commit.getID(), parents[0],
+                parents[1], commit.getTime());
+        try (FileChannel out = FileChannel.open(GRAPH_FILE.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                out.write(record);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        graph = null;
+    }
+
+    /** Return the positions of the parents of COMMIT (NONE where it has
+     * none), or null if COMMIT is in the graph already. Unless the
+     * positions are loaded, the records are scanned back from the last
+     * one, as a new commit's parents are mostly recent: a commit only
+     * follows its parents, so the scan stops once they are found.
+     * @return is the first and second parent positions.*/
+    private int[] parentsOf(Commit commit) {
+        String[] links = {commit.getParentLink(), commit.getSecondParent()};
+        int[] result = {NONE, NONE};
+        if (_positions != null) {
+            if (_positions.containsKey(commit.getID())) {
+                return null;
+            }
+            for (int i = 0; i < links.length; i += 1) {
+                result[i] = parentPosition(links[i]);
+            }
+            return result;
+        }
+        byte[] self = PackFile.fromHex(commit.getID());
+        byte[][] wanted = new byte[links.length][];
+        int missing = 0;
+        for (int i = 0; i < links.length; i += 1) {
+            if (links[i] != null && !links[i].isEmpty()) {
+                wanted[i] = PackFile.fromHex(links[i]);
+                missing += 1;
+            }
+        }
+        byte[] raw = new byte[PackFile.ID_BYTES];
+        for (int p = _count - 1; p >= 0 && missing > 0; p -= 1) {
+            _records.get(p * RECORD_SIZE, raw);
+            if (Arrays.equals(raw, self)) {
+                return null;
+            }
+            for (int i = 0; i < links.length; i += 1) {
+                if (wanted[i] != null && result[i] == NONE
+                        && Arrays.equals(raw, wanted[i])) {
+                    result[i] = p;
+                    missing -= 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the record the commit with ID, parents at PARENT and
+     * SECONDPARENT (or NONE) and TIME would have in this graph.
+     * @return is the record, ready to be written.*/
+    private ByteBuffer record(String id, int parent, int secondParent,
+                              long time) {
+        int generation = 1 + Math.max(
+                parent == NONE ? 0 : generation(parent),
+                secondParent == NONE ? 0 : generation(secondParent));
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(PackFile.fromHex(id)).putInt(parent)
+                .putInt(secondParent).putInt(generation)
+                .putLong(time).flip();
+        return record;
+    }
+
+    /** Return the position of parent ID, which may be null or empty.
+     * @return is the position or NONE.*/
+    private int parentPosition(String id) {
+        if (id == null || id.isEmpty()) {
+            return NONE;
+        }
+        Integer position = positions().get(id);
+        return position == null ? NONE : position;
+    }
+
+    /** Return the position of each commit, by hex ID.
+     * @return is the map.*/
+    private HashMap<String, Integer> positions() {
+        if (_positions == null) {
+            _positions = new HashMap<>();
+            for (int i = 0; i < _count; i += 1) {
+                _positions.put(id(i), i);
+            }
+        }
+        return _positions;
+    }
+
+    /** Read the graph file.
+     * @return is the graph.*/
+    private static CommitGraph read() {
+        try (FileChannel in = FileChannel.open(GRAPH_FILE.toPath())) {
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY,
+                    0, in.size());
+            byte[] magic = new byte[MAGIC.length];
+            if (map.limit() >= HEADER) {
+                map.get(0, magic);
+            }
+            if (!Arrays.equals(magic, MAGIC)) {
+                return rebuild();
+            }
+            return new CommitGraph(map.slice(HEADER,
+                    map.limit() - HEADER), map.getLong(MAGIC.length));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the graph file afresh from every commit object, oldest
+     * first but parents always before children. Only the parents and
+     * time of each commit are kept while sorting.
+     * @return is the new graph.*/
+    static CommitGraph rebuild() {
+        HashMap<String, String[]> parents = new HashMap<>();
+        HashMap<String, Long> times = new HashMap<>();
+        for (String id : Commit.allCommitIDs()) {
+            Commit commit = Commit.getCommitFromFile(id);
+            parents.put(id, new String[] {commit.getParentLink(),
+                commit.getSecondParent()});
+            times.put(id, commit.getTime());
+        }
+        List<String> byTime = new ArrayList<>(parents.keySet());
+        byTime.sort(Comparator.comparing(times::get));
+        CommitGraph result = new CommitGraph(ByteBuffer.allocate(0),
+                ThreadLocalRandom.current().nextLong());
+        result._records = ByteBuffer.allocate(parents.size() * RECORD_SIZE);
+        result._positions = new HashMap<>();
+        Deque<String> work = new ArrayDeque<>();
+        for (String id : byTime) {
+            work.push(id);
+            while (!work.isEmpty()) {
+                String top = work.peek();
+                if (result._positions.containsKey(top)) {
+                    work.pop();
+                    continue;
+                }
+                boolean ready = true;
+                for (String parent : parents.get(top)) {
+                    if (parent != null && parents.containsKey(parent)
+                            && !result._positions.containsKey(parent)) {
+                        work.push(parent);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    work.pop();
+                    String[] links = parents.get(top);
+                    result._records.put(result.record(top,
+                            result.parentPosition(links[0]),
+                            result.parentPosition(links[1]),
+                            times.get(top)));
+                    result._positions.put(top, result._count);
+                    result._count += 1;
+                }
+            }
+        }
+        result._records.flip();
+        File temp = new File(GRAPH_FILE.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer all = ByteBuffer.allocate(HEADER
+                    + result._count * RECORD_SIZE);
+            all.put(MAGIC).putLong(result._epoch)
+                    .put(result._records.duplicate().clear()).flip();
+            while (all.hasRemaining()) {
+                out.write(all);
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ObjectStore.moveIntoPlace(temp, GRAPH_FILE);
+        return result;
+    }
+
+    /** Take over the records and positions of OTHER. */
+    private void copyFrom(CommitGraph other) {
+        _records = other._records;
+        _count = other._count;
+        _epoch = other._epoch;
+        _positions = other._positions;
+    }
+}
@@ -0,0 +1,92 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/** Class giving access to the repository settings kept in
+ * .gitlet/config.txt as "key=value" lines. Missing keys (or a
+ * missing file, as in repositories made before it existed) fall
+ * back to the defaults given by callers.
+ * @author Katrina Sharonin.*/
+final class Config {
+
+    /** Config file in gitlet folder.*/
+    static final File CONFIG_FILE =
+            Utils.join(RepoFace.GITLET_FOLDER, "config.txt");
+
+    /** Key naming the codec new objects are written with.*/
+    static final String CODEC = "core.codec";
+
+    /** Key giving the compression level of the codec, 0 to 9, or -1
+     * for the codec's default.*/
+    static final String COMPRESSION_LEVEL = "core.compression";
+
+    /** Settings read from CONFIG_FILE, loaded on first use.*/
+    private static Properties settings;
+
+    /** Not instantiated; static functions only. */
+    private Config() {
+    }
+
+    /** Return the value of KEY, or DEFAULTVALUE if it is not set.
+     * @return is the setting.*/
+    static String get(String key, String defaultValue) {
+        return load().getProperty(key, defaultValue);
+    }
+
+    /** Return the value of KEY as an int, or DEFAULTVALUE if it is not
+     * set or not a number.
+     * @return is the setting.*/
+    static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, "").trim());
+        } catch (NumberFormatException excp) {
+            return defaultValue;
+        }
+    }
+
+    /** Set KEY to VALUE and write the config file back out. */
+    static void set(String key, String value) {
+        Properties current = load();
+        current.setProperty(key, value);
+        try (OutputStream out =
+                     Files.newOutputStream(CONFIG_FILE.toPath())) {
+            current.store(out, null);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Forget the loaded settings so the next use rereads the file. */
+    static void reload() {
+        settings = null;
+    }
+
+    /** Return the codec new objects are written with.
+     * @return is the configured codec.*/
+    static ObjectCodec writeCodec() {
+        return ObjectCodec.forName(get(CODEC, "deflate"),
+                getInt(COMPRESSION_LEVEL, -1));
+    }
+
+    /** Read CONFIG_FILE if not done yet.
+     * @return is the settings.*/
+    private static Properties load() {
+        if (settings == null) {
+            settings = new Properties();
+            if (CONFIG_FILE.exists()) {
+                try (InputStream in =
+                             Files.newInputStream(CONFIG_FILE.toPath())) {
+                    settings.load(in);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return settings;
+    }
+}
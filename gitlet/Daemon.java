@@ -0,0 +1,219 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+
+/** Class serving commands for one repository from a single JVM, so
+ * that the index, packs, commit-graph and config stay loaded and the
+ * code stays compiled between commands. "gitlet daemon" listens on
+ * SOCKET_FILE until "gitlet daemon stop"; Client forwards commands to
+ * it. Commands run one at a time, in the order they connect, with
+ * System.out and System.err sent back to the client, and answer with
+ * the exit code a JVM of their own would have: 0, or 1 after an
+ * uncaught exception. They see an empty System.in.
+ * Other processes may still change the repository: before each
+ * command, any of the WATCHED files that changed since the last one
+ * ended has its loaded state dropped. A command that ends early or
+ * fails may leave loaded state it did not save, so all of it is
+ * dropped then.
+ * @author Katrina Sharonin.*/
+final class Daemon {
+
+    /** Socket the daemon listens on, in gitlet folder.*/
+    static final File SOCKET_FILE =
+            Utils.join(RepoFace.GITLET_FOLDER, Client.SOCKET_NAME);
+
+    /** Bytes of output buffered before they are sent. */
+    private static final int BUFFER = 1 << 16;
+
+    /** Files state is loaded from between commands. */
+    private static final File[] WATCHED = {
+        RepoFace.INDEX_FILE, PackFile.PACKS_FOLDER, CommitGraph.GRAPH_FILE,
+        Config.CONFIG_FILE,
+    };
+
+    /** How to drop the state loaded from each of WATCHED. */
+    private static final Runnable[] RELOADS = {
+        RepoFace::reloadIndex, PackFile::reload, CommitGraph::reload,
+        Config::reload,
+    };
+
+    /** Not instantiated; static functions only. */
+    private Daemon() {
+    }
+
+    /** Serve commands until told to stop. */
+    static void serve() {
+        if (answers()) {
+            System.out.println("A daemon is already running.");
+            return;
+        }
+        SOCKET_FILE.delete();
+        try (ServerSocketChannel server =
+                     ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET_FILE.toPath()));
+            SOCKET_FILE.deleteOnExit();
+            Object[] stamps = new Object[WATCHED.length];
+            stamp(stamps);
+            boolean serving = true;
+            while (serving) {
+                SocketChannel client = server.accept();
+                try (client) {
+                    serving = answer(client, stamps);
+                } catch (IOException excp) {
+                    /* The client went away; serve the next one. */
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            SOCKET_FILE.delete();
+        }
+    }
+
+    /** Return true if a daemon is listening on SOCKET_FILE.
+     * @return is boolean.*/
+    private static boolean answers() {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(
+                    SOCKET_FILE.toPath())).close();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Tell the running daemon to stop. */
+    static void stop() {
+        if (Client.forward("daemon", "stop") < 0) {
+            System.out.println("No daemon is running.");
+        }
+    }
+
+    /** Run the command CLIENT sends, sending back what it prints and
+     * its exit code. STAMPS are those of WATCHED after the last command.
+     * @return is false if the command stops the daemon.*/
+    private static boolean answer(SocketChannel client, Object[] stamps)
+        throws IOException {
+        String[] args = Client.readStrings(new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(client))));
+        DataOutputStream reply = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client),
+                        BUFFER));
+        if (args.length == 2 && args[0].equals("daemon")
+                && args[1].equals("stop")) {
+            reply.writeByte(Client.EXIT);
+            reply.writeInt(0);
+            reply.flush();
+            return false;
+        }
+        Object[] now = new Object[WATCHED.length];
+        stamp(now);
+        for (int i = 0; i < WATCHED.length; i += 1) {
+            if (!Objects.equals(now[i], stamps[i])) {
+                RELOADS[i].run();
+            }
+        }
+        InputStream in = System.in;
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream toOut = new PrintStream(new BufferedOutputStream(
+                new Frames(reply, Client.OUT), BUFFER), false);
+        PrintStream toErr = new PrintStream(
+                new Frames(reply, Client.ERR), true);
+        System.setIn(InputStream.nullInputStream());
+        System.setOut(toOut);
+        System.setErr(toErr);
+        int code = 0;
+        boolean finished = false;
+        try {
+            Main.run(args);
+            finished = true;
+        } catch (Main.Exit excp) {
+            /* Ended early, having printed its message. */
+        } catch (RuntimeException | Error excp) {
+            toOut.flush();
+            toErr.print("Exception in thread \"main\" ");
+            excp.printStackTrace(toErr);
+            code = 1;
+        } finally {
+            toOut.flush();
+            toErr.flush();
+            System.setIn(in);
+            System.setOut(out);
+            System.setErr(err);
+        }
+        if (!finished) {
+            for (Runnable reload : RELOADS) {
+                reload.run();
+            }
+        }
+        stamp(stamps);
+        reply.writeByte(Client.EXIT);
+        reply.writeInt(code);
+        reply.flush();
+        return true;
+    }
+
+    /** Fill STAMPS with a stamp of each of WATCHED, which changes
+     * whenever the file is written or replaced. */
+    private static void stamp(Object[] stamps) {
+        for (int i = 0; i < WATCHED.length; i += 1) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(
+                        WATCHED[i].toPath(), BasicFileAttributes.class);
+                stamps[i] = Arrays.asList(attributes.fileKey(),
+                        attributes.lastModifiedTime(), attributes.size());
+            } catch (IOException excp) {
+                stamps[i] = null;
+            }
+        }
+    }
+
+    /** Stream writing everything it is given as frames of one kind. */
+    private static final class Frames extends OutputStream {
+
+        /** Where frames go. */
+        private final DataOutputStream _reply;
+
+        /** Kind of every frame. */
+        private final byte _kind;
+
+        /** Stream writing frames of KIND to REPLY. */
+        Frames(DataOutputStream reply, byte kind) {
+            _reply = reply;
+            _kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            _reply.writeByte(_kind);
+            _reply.writeInt(len);
+            _reply.write(b, off, len);
+        }
+    }
+}
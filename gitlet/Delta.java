@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+
+/** Copy/insert deltas between two versions of a file's content.
+ * A delta starts with the varint lengths of the base and of the result,
+ * then holds instructions: a byte with the high bit set is a COPY,
+ * followed by the varint offset and varint length of a run of the base;
+ * a byte N from 1 to 127 is an INSERT of the N literal bytes after it.
+ * Matches are found by indexing the base in BLOCK sized blocks and
+ * extending every block hit in both directions.
+ * @author Katrina Sharonin.*/
+final class Delta {
+
+    /** Size of the blocks the base is indexed by. */
+    private static final int BLOCK = 16;
+
+    /** Longest run one INSERT instruction can hold. */
+    private static final int MAX_INSERT = 127;
+
+    /** Instruction byte of a COPY. */
+    private static final int COPY = 0x80;
+
+    /** Not instantiated; static functions only. */
+    private Delta() {
+    }
+
+    /** Return a delta turning BASE into TARGET.
+     * @return is the delta bytes.*/
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int[] table = indexBlocks(base);
+        int mask = table.length - 1;
+        int pending = 0;
+        int at = 0;
+        while (at + BLOCK <= target.length) {
+            int candidate = table[hash(target, at) & mask] - 1;
+            if (candidate < 0 || !sameBlock(base, candidate, target, at)) {
+                at += 1;
+                continue;
+            }
+            int baseStart = candidate;
+            int targetStart = at;
+            while (targetStart > pending && baseStart > 0
+                    && target[targetStart - 1] == base[baseStart - 1]) {
+                targetStart -= 1;
+                baseStart -= 1;
+            }
+            int length = at - targetStart + BLOCK;
+            while (targetStart + length < target.length
+                    && baseStart + length < base.length
+                    && target[targetStart + length]
+                    == base[baseStart + length]) {
+                length += 1;
+            }
+            writeInsert(out, target, pending, targetStart);
+            out.write(COPY);
+            writeVarint(out, baseStart);
+            writeVarint(out, length);
+            at = targetStart + length;
+            pending = at;
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Apply the delta found in DELTA from byte START on to BASE.
+     * @return is the resulting content.*/
+    static byte[] apply(byte[] base, byte[] delta, int start) {
+        int[] at = {start};
+        int baseLength = readVarint(delta, at);
+        if (baseLength != base.length) {
+            throw new IllegalArgumentException("delta does not fit base");
+        }
+        byte[] result = new byte[readVarint(delta, at)];
+        int filled = 0;
+        while (at[0] < delta.length) {
+            int instruction = delta[at[0]] & 0xFF;
+            at[0] += 1;
+            if ((instruction & COPY) != 0) {
+                int offset = readVarint(delta, at);
+                int length = readVarint(delta, at);
+                System.arraycopy(base, offset, result, filled, length);
+                filled += length;
+            } else {
+                System.arraycopy(delta, at[0], result, filled, instruction);
+                at[0] += instruction;
+                filled += instruction;
+            }
+        }
+        if (filled != result.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Return a hash table from block hash to 1 + offset of the first
+     * block of BASE with that hash; 0 marks an empty slot.
+     * @return is the table, sized to a power of two.*/
+    private static int[] indexBlocks(byte[] base) {
+        int blocks = base.length / BLOCK;
+        int size = Integer.highestOneBit(Math.max(blocks, 1) * 2 + 1);
+        int[] table = new int[size];
+        for (int offset = (blocks - 1) * BLOCK; offset >= 0;
+             offset -= BLOCK) {
+            table[hash(base, offset) & (size - 1)] = offset + 1;
+        }
+        return table;
+    }
+
+    /** Return the hash of the BLOCK bytes of DATA at OFFSET.
+     * @return is the hash.*/
+    private static int hash(byte[] data, int offset) {
+        int h = 0;
+        for (int i = offset; i < offset + BLOCK; i += 1) {
+            h = 31 * h + data[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Return true if the blocks of BASE at BASEAT and TARGET at
+     * TARGETAT are equal.
+     * @return is boolean.*/
+    private static boolean sameBlock(byte[] base, int baseAt,
+                                     byte[] target, int targetAt) {
+        if (baseAt + BLOCK > base.length) {
+            return false;
+        }
+        for (int i = 0; i < BLOCK; i += 1) {
+            if (base[baseAt + i] != target[targetAt + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write INSERT instructions to OUT for TARGET from FROM to TO. */
+    private static void writeInsert(ByteArrayOutputStream out,
+                                    byte[] target, int from, int to) {
+        while (from < to) {
+            int length = Math.min(MAX_INSERT, to - from);
+            out.write(length);
+            out.write(target, from, length);
+            from += length;
+        }
+    }
+
+    /** Write VALUE to OUT as a little endian base 128 varint. */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Read a varint from DATA at AT[0], advancing AT[0] past it.
+     * @return is the value.*/
+    static int readVarint(byte[] data, int[] at) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            int b = data[at[0]] & 0xFF;
+            at[0] += 1;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
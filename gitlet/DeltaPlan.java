@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Class choosing which blobs to store as deltas and against what.
+ * Every file name tracked anywhere in the given history gets the list
+ * of its versions, newest first. The newest version of a file is kept
+ * whole and every older version is a delta against the next newer one,
+ * so the versions read most often rebuild fastest. A version whose
+ * base is already MAXDEPTH deltas deep is kept whole instead, which
+ * bounds how long any chain can get. A blob shared by several files is
+ * planned once, by the first file that reaches it, and bases are always
+ * planned before the blobs using them, so no chain can loop.
+ * @author Katrina Sharonin.*/
+final class DeltaPlan {
+
+    /** Config key bounding delta chain length. */
+    static final String DEPTH_KEY = "pack.deltaDepth";
+
+    /** Chain length bound used when DEPTH_KEY is not set. */
+    static final int DEFAULT_DEPTH = 10;
+
+    /** Longest chain of deltas allowed. */
+    private final int _maxDepth;
+
+    /** Commits already added, by ID. */
+    private final Set<String> _seen = new HashSet<>();
+
+    /** Commits added, newest first. */
+    private final TreeMap<Long, List<Commit>> _byTime = new TreeMap<>();
+
+    /** Base chosen for each planned blob, null for whole blobs. */
+    private Map<String, String> _bases;
+
+    /** Plan allowing chains of at most MAXDEPTH deltas. */
+    DeltaPlan(int maxDepth) {
+        _maxDepth = Math.max(0, maxDepth);
+    }
+
+    /** Add COMMITID and all of its ancestors to the history planned
+     * over. */
+    void addHistory(String commitID) {
+        List<String> work = new ArrayList<>();
+        work.add(commitID);
+        while (!work.isEmpty()) {
+            String id = work.remove(work.size() - 1);
+            if (id == null || id.isEmpty() || !_seen.add(id)) {
+                continue;
+            }
+            Commit commit = Commit.getCommitFromFile(id);
+            _byTime.computeIfAbsent(-commit.getTime(),
+                    k -> new ArrayList<>()).add(commit);
+            work.add(commit.getParentLink());
+            work.add(commit.getSecondParent());
+        }
+        _bases = null;
+    }
+
+    /** Return every blob found in the history, bases before the blobs
+     * stored against them.
+     * @return is the blob IDs.*/
+    Collection<String> blobs() {
+        return plan().keySet();
+    }
+
+    /** Return the blob BLOBID should be stored as a delta against, or
+     * null if it should be kept whole.
+     * @return is the base ID.*/
+    String baseOf(String blobID) {
+        return plan().get(blobID);
+    }
+
+    /** Compute the plan if the history changed since last time.
+     * @return is the base of each blob, in planning order.*/
+    private Map<String, String> plan() {
+        if (_bases != null) {
+            return _bases;
+        }
+        TreeMap<String, LinkedHashSet<String>> versions = new TreeMap<>();
+        for (List<Commit> commits : _byTime.values()) {
+            for (Commit commit : commits) {
+                for (Map.Entry<String, String> tracked
+                        : commit.getSnapshot().entrySet()) {
+                    versions.computeIfAbsent(tracked.getKey(),
+                            k -> new LinkedHashSet<>())
+                            .add(tracked.getValue());
+                }
+            }
+        }
+        _bases = new LinkedHashMap<>();
+        Map<String, Integer> depths = new HashMap<>();
+        for (LinkedHashSet<String> fileVersions : versions.values()) {
+            String newer = null;
+            for (String blobID : fileVersions) {
+                if (!depths.containsKey(blobID)) {
+                    if (newer == null || depths.get(newer) >= _maxDepth) {
+                        _bases.put(blobID, null);
+                        depths.put(blobID, 0);
+                    } else {
+                        _bases.put(blobID, newer);
+                        depths.put(blobID, depths.get(newer) + 1);
+                    }
+                }
+                newer = blobID;
+            }
+        }
+        return _bases;
+    }
+}
@@ -1,16 +1,64 @@
 package gitlet;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TreeMap;
-import java.io.File;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 /** Single class instead of two -> house both tree maps.
  * Both maps will be written into the same file and will
  * be separated after deserialization.
+ * Alongside the staging maps the index caches, per working file, the
+ * blob ID it hashed to and the size, mtime, ctime and inode it had
+ * then, so files whose stat has not changed are never hashed again.
+ * The file is 4 magic bytes ("GLI" + version) followed by one record
+ * per name: a flags byte, the staged blob ID, the cached blob ID, size,
+ * mtime and ctime (in nanoseconds) and inode, then the short length and
+ * UTF-8 bytes of the name. A record's size only depends on its name, so
+ * saving rewrites changed records in place, appends new ones and
+ * zeroes the flags of dropped ones; the file is compacted when dropped
+ * records outnumber live ones. It is read through a memory mapping.
+ * Indexes of older gitlets were serialized Index objects and are still
+ * read.
  * @author Katrina Sharonin.*/
 public class Index implements Serializable {
 
+    /** Pinned so serialized indexes of older gitlets stay readable. */
+    private static final long serialVersionUID = 4533875367859256398L;
+
+    /** Magic bytes starting an index file, last one is version. */
+    private static final byte[] MAGIC = {'G', 'L', 'I', 1};
+
+    /** Flag of a record whose name is staged for addition. */
+    private static final byte ADDED = 1;
+
+    /** Flag of a record whose name is staged for removal. */
+    private static final byte REMOVED = 2;
+
+    /** Flag of a record holding a cached stat and hash. */
+    private static final byte CACHED = 4;
+
+    /** Size of a record apart from its name. */
+    private static final int FIXED_SIZE = 1 + 2 * PackFile.ID_BYTES
+            + 4 * Long.BYTES + Short.BYTES;
+
+    /** Dropped records tolerated before the file is compacted. */
+    private static final int MIN_COMPACT = 64;
+
     /** Added V: Treemap mapping literal name of file to
      * blobID.
      * I.e "Hello.txt" <-> "fkwjfk43" etc. */
@@ -21,15 +69,254 @@ public class Index implements Serializable {
      * I.e "Hello.txt" <-> "fkwjfk43" etc. */
     private TreeMap<String, String> removed;
 
+    /** Cached stat of each working file hashed, by name. */
+    private transient TreeMap<String, Stat> _stats;
+
+    /** Record of each name as last read or written, null until the
+     * file is in the current format. */
+    private transient HashMap<String, Record> _stored;
+
+    /** Length of the index file. */
+    private transient long _end;
+
+    /** Number of dropped records in the index file. */
+    private transient int _dead;
+
+    /** Modification time of the index file when read, in nanoseconds.
+     * Cached stats only count for files last modified before it. */
+    private transient long _savedAt;
+
+    /** Staged IDs, added then removed, each name had at the last mark,
+     * for names changed since; null when not marked. */
+    private transient HashMap<String, String[]> _marked;
+
     /** Construct area including added and removed. */
     public Index() {
         added = new TreeMap<>();
         removed = new TreeMap<>();
+        _stats = new TreeMap<>();
     }
 
-    /** Save index state from correct POV. */
+    /** Return the index stored in INDEXFILE, empty if there is none.
+     * @return is the index.*/
+    static Index load(File indexFile) {
+        if (!indexFile.exists() || indexFile.length() == 0) {
+            return new Index();
+        }
+        if (ObjectStore.isLegacy(indexFile)) {
+            Index legacy = Utils.readObject(indexFile, Index.class);
+            legacy._stats = new TreeMap<>();
+            return legacy;
+        }
+        Index result = new Index();
+        result._stored = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(indexFile.toPath())) {
+            MappedByteBuffer map = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[MAGIC.length];
+            map.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("bad index "
+                        + indexFile);
+            }
+            while (map.hasRemaining()) {
+                result.readRecord(map);
+            }
+            result._end = channel.size();
+            result._savedAt = Files.getLastModifiedTime(indexFile.toPath())
+                    .to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Read the record at the position of MAP into this index. */
+    private void readRecord(MappedByteBuffer map) {
+        long offset = map.position();
+        int nameLength = map.getShort(map.position() + FIXED_SIZE
+                - Short.BYTES) & 0xFFFF;
+        byte[] bytes = new byte[FIXED_SIZE + nameLength];
+        map.get(bytes);
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        byte flags = record.get();
+        if (flags == 0) {
+            _dead += 1;
+            return;
+        }
+        byte[] staged = new byte[PackFile.ID_BYTES];
+        byte[] cached = new byte[PackFile.ID_BYTES];
+        record.get(staged).get(cached);
+        Stat stat = new Stat(record.getLong(), record.getLong(),
+                record.getLong(), record.getLong());
+        String name = new String(bytes, FIXED_SIZE, nameLength,
+                StandardCharsets.UTF_8);
+        if ((flags & ADDED) != 0) {
+            added.put(name, ObjectStore.toHex(staged));
+        } else if ((flags & REMOVED) != 0) {
+            removed.put(name, ObjectStore.toHex(staged));
+        }
+        if ((flags & CACHED) != 0) {
+            stat._blobID = ObjectStore.toHex(cached);
+            _stats.put(name, stat);
+        }
+        _stored.put(name, new Record(offset, bytes));
+    }
+
+    /** Save index state from correct POV. Only records that changed
+     * since the index was read are written. */
     public void saveIndex() {
-        Utils.writeObject(RepoFace.INDEX_FILE, this);
+        if (_stored == null || !RepoFace.INDEX_FILE.exists()) {
+            rewrite();
+            return;
+        }
+        TreeSet<String> names = new TreeSet<>(_stored.keySet());
+        names.addAll(added.keySet());
+        names.addAll(removed.keySet());
+        names.addAll(_stats.keySet());
+        try (FileChannel out = FileChannel.open(
+                RepoFace.INDEX_FILE.toPath(), StandardOpenOption.WRITE)) {
+            for (String name : names) {
+                byte[] want = encode(name);
+                Record have = _stored.get(name);
+                if (have != null && Arrays.equals(want, have._bytes)) {
+                    continue;
+                }
+                if (want == null) {
+                    writeFully(out, ByteBuffer.wrap(new byte[1]),
+                            have._offset);
+                    _stored.remove(name);
+                    _dead += 1;
+                } else if (have == null) {
+                    writeFully(out, ByteBuffer.wrap(want), _end);
+                    _stored.put(name, new Record(_end, want));
+                    _end += want.length;
+                } else {
+                    writeFully(out, ByteBuffer.wrap(want), have._offset);
+                    _stored.put(name, new Record(have._offset, want));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_dead > MIN_COMPACT && _dead > _stored.size()) {
+            rewrite();
+        }
+    }
+
+    /** Save the whole index at once, replacing the old file, for
+     * batches that change many records. */
+    public void saveIndexAtomically() {
+        rewrite();
+    }
+
+    /** Write the whole index afresh to a temporary file and move it in
+     * place of the old one. */
+    private void rewrite() {
+        TreeSet<String> names = new TreeSet<>(added.keySet());
+        names.addAll(removed.keySet());
+        names.addAll(_stats.keySet());
+        HashMap<String, Record> stored = new HashMap<>();
+        File temp = new File(RepoFace.INDEX_FILE.getPath() + ".tmp");
+        long end = MAGIC.length;
+        try (FileChannel out = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.wrap(MAGIC), 0);
+            for (String name : names) {
+                byte[] record = encode(name);
+                if (record != null) {
+                    writeFully(out, ByteBuffer.wrap(record), end);
+                    stored.put(name, new Record(end, record));
+                    end += record.length;
+                }
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ObjectStore.moveIntoPlace(temp, RepoFace.INDEX_FILE);
+        _stored = stored;
+        _end = end;
+        _dead = 0;
+    }
+
+    /** Return the record NAME should have, or null if it needs none.
+     * @return is the record bytes.*/
+    private byte[] encode(String name) {
+        byte flags = 0;
+        String staged = added.get(name);
+        if (staged != null) {
+            flags |= ADDED;
+        } else if (removed.containsKey(name)) {
+            staged = removed.get(name);
+            flags |= REMOVED;
+        }
+        Stat stat = _stats.get(name);
+        if (stat != null) {
+            flags |= CACHED;
+        }
+        if (flags == 0) {
+            return null;
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(FIXED_SIZE
+                + nameBytes.length);
+        record.put(flags);
+        record.put(staged == null ? new byte[PackFile.ID_BYTES]
+                : PackFile.fromHex(staged));
+        if (stat == null) {
+            record.put(new byte[PackFile.ID_BYTES + 4 * Long.BYTES]);
+        } else {
+            record.put(PackFile.fromHex(stat._blobID)).putLong(stat._size)
+                    .putLong(stat._mtime).putLong(stat._ctime)
+                    .putLong(stat._inode);
+        }
+        record.putShort((short) nameBytes.length).put(nameBytes);
+        return record.array();
+    }
+
+    /** Write all of BYTES to OUT at POSITION. */
+    private static void writeFully(FileChannel out, ByteBuffer bytes,
+                                   long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += out.write(bytes, position);
+        }
+    }
+
+    /** Return the blob ID working file FILE hashes to. If its size,
+     * mtime, ctime and inode match those cached when it was last hashed
+     * the cached ID is returned without reading it; otherwise it is
+     * hashed and the cache updated. A file modified no earlier than the
+     * index was last saved is always hashed, since a change in the same
+     * clock tick as its caching would not show in its stat. Save the
+     * index to keep the cache. Safe to call from several threads.
+     * @param file is the working file.
+     * @return is its blob ID.*/
+    public String hashOf(File file) {
+        Stat now = Stat.of(file);
+        Stat cached;
+        synchronized (this) {
+            cached = _stats.get(file.getName());
+        }
+        if (cached != null && cached.sameAs(now)
+                && cached._mtime < _savedAt) {
+            return cached._blobID;
+        }
+        now._blobID = ObjectStore.sha1(file);
+        synchronized (this) {
+            _stats.put(file.getName(), now);
+        }
+        return now._blobID;
+    }
+
+    /** Cache that working file FILE, just written, holds blob BLOBID.
+     * @param file is the working file.
+     * @param blobID is the blob written into it.*/
+    public void written(File file, String blobID) {
+        Stat now = Stat.of(file);
+        now._blobID = blobID;
+        _stats.put(file.getName(), now);
     }
 
     /** Add ADDIN to existing index.
@@ -41,9 +328,10 @@ public class Index implements Serializable {
      * @return boolean is true if we changed anything. */
 
     public boolean addtoIndex(File addIn) {
-        Blob blobOfAdd = new Blob(addIn);
+        Blob blobOfAdd = new Blob(addIn, hashOf(addIn));
         String blobID = blobOfAdd.blobID();
         String nameOfFile = addIn.getName();
+        touch(nameOfFile);
         if (RepoFace.headdReturner().exists()) {
             String temp =
                     Utils.readContentsAsString(RepoFace.
@@ -80,15 +368,8 @@ public class Index implements Serializable {
                 added.remove(nameOfFile);
             }
         }
-        if (!blobOfAdd.blobFileLocation().exists()) {
-            File newLocation =
-                    Utils.join(RepoFace.BLOBS_FOLDER, blobID);
-            try {
-                newLocation.createNewFile();
-                Utils.writeObject(newLocation, blobOfAdd);
-            } catch (IOException error) {
-                System.exit(0);
-            }
+        if (!Blob.exists(blobID)) {
+            blobOfAdd.saveBlob();
             added.put(nameOfFile, blobID);
             return true;
         }
@@ -113,17 +394,10 @@ public class Index implements Serializable {
     public boolean doesCAFTreeMapExist(String commitID,
                                                    String blobID,
                                                    String fileName) {
-        File attemptToFindCommit =
-                Utils.join(RepoFace.COMMITS_FOLDER, commitID);
-        if (attemptToFindCommit.exists()) {
+        if (Commit.exists(commitID)) {
             Commit foundIt =
-                    Utils.readObject(attemptToFindCommit,
-                            Commit.class);
-            TreeMap<String, String> getSnapshot =
-                    foundIt.getSnapshot();
-            return getSnapshot.containsKey(fileName)
-                    && getSnapshot.get(fileName).
-                    equals(blobID);
+                    Commit.getCommitFromFile(commitID);
+            return blobID.equals(foundIt.trackedBlob(fileName));
         } else {
             return false;
         }
@@ -143,8 +417,64 @@ public class Index implements Serializable {
         return removed;
     }
 
-    /** Clear index -> clear both tree maps.*/
+    /** Unstage the addition of NAME.
+     * @param name is the file name.*/
+    public void unstage(String name) {
+        touch(name);
+        added.remove(name);
+    }
+
+    /** Stage the removal of NAME, last tracked as blob BLOBID.
+     * @param name is the file name.
+     * @param blobID is its blob.*/
+    public void stageRemoval(String name, String blobID) {
+        touch(name);
+        removed.put(name, blobID);
+    }
+
+    /** Remember the staged files as they are now, so that rollback
+     * can return to them. Cached stats are not remembered: they hold
+     * for the working files whatever is staged. */
+    public void mark() {
+        _marked = new HashMap<>();
+    }
+
+    /** Return the staged files to what they were at the last mark. */
+    public void rollback() {
+        for (Map.Entry<String, String[]> entry : _marked.entrySet()) {
+            String name = entry.getKey();
+            String[] staged = entry.getValue();
+            if (staged[0] == null) {
+                added.remove(name);
+            } else {
+                added.put(name, staged[0]);
+            }
+            if (staged[1] == null) {
+                removed.remove(name);
+            } else {
+                removed.put(name, staged[1]);
+            }
+        }
+        _marked.clear();
+    }
+
+    /** Note the staged IDs of NAME before it first changes after a
+     * mark. */
+    private void touch(String name) {
+        if (_marked != null && !_marked.containsKey(name)) {
+            _marked.put(name, new String[] {added.get(name),
+                removed.get(name)});
+        }
+    }
+
+    /** Clear index -> clear both tree maps. Cached stats are kept.*/
     public void clear() {
+        for (String name : added.keySet()) {
+            touch(name);
+        }
+        for (String name : removed.keySet()) {
+            touch(name);
+        }
         added.clear();
         removed.clear();
     }
@@ -157,4 +487,86 @@ public class Index implements Serializable {
         return  addedCase && removedCase;
     }
 
+    /** A record as it sits in the index file. */
+    private static final class Record {
+
+        /** Offset of the record in the file. */
+        private final long _offset;
+
+        /** Bytes of the record. */
+        private final byte[] _bytes;
+
+        /** Record of BYTES at OFFSET. */
+        Record(long offset, byte[] bytes) {
+            _offset = offset;
+            _bytes = bytes;
+        }
+    }
+
+    /** What a working file looked like when it was hashed. */
+    private static final class Stat {
+
+        /** Blob ID the file hashed to. */
+        private String _blobID;
+
+        /** Size in bytes. */
+        private final long _size;
+
+        /** Modification time in nanoseconds. */
+        private final long _mtime;
+
+        /** Status change time in nanoseconds. */
+        private final long _ctime;
+
+        /** Inode number, 0 where the file system has none. */
+        private final long _inode;
+
+        /** Stat of SIZE, MTIME, CTIME and INODE. */
+        Stat(long size, long mtime, long ctime, long inode) {
+            _size = size;
+            _mtime = mtime;
+            _ctime = ctime;
+            _inode = inode;
+        }
+
+        /** Return the current stat of FILE. Where the platform has no
+         * unix attributes the creation time stands in for ctime.
+         * @return is the stat, without a blob ID.*/
+        static Stat of(File file) {
+            try {
+                Map<String, Object> unix = Files.readAttributes(
+                        file.toPath(), "unix:size,lastModifiedTime,ctime,ino",
+                        LinkOption.NOFOLLOW_LINKS);
+                return new Stat((Long) unix.get("size"),
+                        nanos(unix.get("lastModifiedTime")),
+                        nanos(unix.get("ctime")), (Long) unix.get("ino"));
+            } catch (UnsupportedOperationException excp) {
+                try {
+                    BasicFileAttributes basic = Files.readAttributes(
+                            file.toPath(), BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    return new Stat(basic.size(),
+                            nanos(basic.lastModifiedTime()),
+                            nanos(basic.creationTime()), 0);
+                } catch (IOException again) {
+                    throw new IllegalArgumentException(again.getMessage());
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** Return TIME, a FileTime, in nanoseconds.
+         * @return is the time.*/
+        private static long nanos(Object time) {
+            return ((FileTime) time).to(TimeUnit.NANOSECONDS);
+        }
+
+        /** Return true if OTHER describes the same unchanged file.
+         * @return is boolean.*/
+        boolean sameAs(Stat other) {
+            return _size == other._size && _mtime == other._mtime
+                    && _ctime == other._ctime && _inode == other._inode;
+        }
+    }
 }
@@ -1,5 +1,19 @@
 package gitlet;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Katrina Sharonin
  */
@@ -12,6 +26,37 @@ public class Main {
      * call on BLOB and COMMIT classes/objects.
      * @param args is input from user.*/
     public static void main(String... args) {
+        try {
+            run(args);
+        } catch (Exit excp) {
+            /* The command finished early, having printed its message. */
+        }
+        System.exit(0);
+    }
+
+    /** Run the command given by ARGS, printing to System.out. A command
+     * that stops early throws Exit, so that a daemon can run many in
+     * one JVM. A first argument of --trace or --trace=json traces the
+     * command (see Trace). */
+    @SuppressWarnings("try")
+    static void run(String... args) {
+        String trace = null;
+        if (args.length > 0 && (args[0].equals("--trace")
+                || args[0].equals("--trace=json"))) {
+            trace = args[0].equals("--trace") ? "summary" : "json";
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Trace.start(trace);
+        try (Trace.Span span = Trace.span(args.length == 0
+                ? "gitlet" : args[0])) {
+            dispatch(args);
+        } finally {
+            Trace.finish();
+        }
+    }
+
+    /** Run the command given by ARGS.*/
+    private static void dispatch(String... args) {
         if (args.length == 0) {
             noCommandsMessage();
         } else {
@@ -23,6 +68,11 @@ public class Main {
             case "log" -> logCaller(args);
             case "global-log" -> globalLogCaller(args);
             case "find" -> findCaller(args);
+            case "search" -> {
+                if (cPA(2, args) && dGFE()) {
+                    RepoFace.searchCommand(args[1]);
+                }
+            }
             case "status" -> statusCaller(args);
             case "checkout" -> checkoutCaller(args);
             case "branch" -> {
@@ -45,10 +95,171 @@ public class Main {
                     RepoFace.mergeCommand(args[1]);
                 }
             }
+            case "migrate" -> {
+                if (cPA(1, args) && dGFE()) {
+                    RepoFace.migrateCommand();
+                }
+            }
+            case "config" -> configCaller(args);
+            case "pack" -> {
+                if (cPA(1, args) && dGFE()) {
+                    RepoFace.packCommand();
+                }
+            }
+            case "repack-deltas" -> {
+                if (cPA(1, args) && dGFE()) {
+                    RepoFace.repackDeltasCommand();
+                }
+            }
+            case "bitmap" -> {
+                if (cPA(1, args) && dGFE()) {
+                    RepoFace.bitmapCommand();
+                }
+            }
+            case "count-objects" -> {
+                if (cPA(1, args) && dGFE()) {
+                    RepoFace.countObjectsCommand();
+                }
+            }
+            case "daemon" -> daemonCaller(args);
+            case "batch" -> batchCaller(args);
             default -> noCommandExists();
             }
         }
-        System.exit(0);
+    }
+
+    /** Signal thrown by exit to end a command early. */
+    static final class Exit extends RuntimeException {
+
+        /** Exits are never serialized; pinned to keep lint quiet. */
+        private static final long serialVersionUID = 1L;
+
+        /** An Exit, which needs no stack trace. */
+        Exit() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** End the running command, whose message has been printed. Used
+     * in place of System.exit so a daemon outlives its commands. */
+    static void exit() {
+        throw new Exit();
+    }
+
+    /** Batch caller: "batch [FILE]" runs the commands in FILE, or
+     * standard input, one per line, and "batch --add [FILE]" adds the
+     * paths in it, one per line. All run in this process, and the
+     * index is saved once, when the batch ends. A command that ends
+     * early leaves the index as it found it; if one fails, the index
+     * is not saved at all.
+     * @param args is whole string.*/
+    public static void batchCaller(String... args) {
+        if (!dGFE()) {
+            return;
+        }
+        boolean paths = args.length > 1 && args[1].equals("--add");
+        int first = paths ? 2 : 1;
+        if (args.length > first + 1) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        Reader source;
+        if (args.length == first) {
+            source = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        } else {
+            File file = new File(args[first]);
+            if (!file.isAbsolute()) {
+                file = new File(System.getProperty("user.dir"), args[first]);
+            }
+            if (!file.exists()) {
+                System.out.println("File does not exist.");
+                return;
+            }
+            try {
+                source = new FileReader(file, StandardCharsets.UTF_8);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        RepoFace.beginBatch();
+        boolean failed = false;
+        try (BufferedReader lines = new BufferedReader(source, 1 << 16)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                String[] command = paths ? new String[] {"add", line}
+                        : words(line);
+                if (paths ? line.isEmpty() : command.length == 0) {
+                    continue;
+                }
+                if (command[0].equals("batch")
+                        || command[0].equals("daemon")) {
+                    System.out.println("Cannot run that command "
+                            + "in a batch.");
+                    continue;
+                }
+                RepoFace.markBatch();
+                try {
+                    run(command);
+                } catch (Exit excp) {
+                    RepoFace.rollbackBatch();
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (RuntimeException excp) {
+            failed = true;
+            throw excp;
+        } finally {
+            RepoFace.endBatch(!failed);
+        }
+    }
+
+    /** Return the words of LINE, split at blanks as a shell would:
+     * double quotes keep blanks in a word, and a backslash keeps the
+     * character after it.
+     * @return is the words.*/
+    static String[] words(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder word = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                i += 1;
+                c = line.charAt(i);
+            } else if (c == '"') {
+                quoted = !quoted;
+                word = word == null ? new StringBuilder() : word;
+                continue;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                if (word != null) {
+                    result.add(word.toString());
+                    word = null;
+                }
+                continue;
+            }
+            word = word == null ? new StringBuilder() : word;
+            word.append(c);
+        }
+        if (word != null) {
+            result.add(word.toString());
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /** Daemon caller: "daemon" serves commands until "daemon stop".
+     * @param args is whole string.*/
+    public static void daemonCaller(String... args) {
+        if (!dGFE()) {
+            return;
+        }
+        if (args.length == 1) {
+            Daemon.serve();
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            Daemon.stop();
+        } else {
+            System.out.println("Incorrect operands.");
+        }
     }
 
     /** Function separator & error trier.
@@ -81,17 +292,50 @@ public class Main {
     /** Log caller like above.
      * @param args is whole string.*/
     public static void logCaller(String... args) {
-        if (cPA(1, args) && dGFE()) {
-            RepoFace.logCommand();
+        long[] options = logOptions(args);
+        if (options != null && dGFE()) {
+            RepoFace.logCommand(options[0], options[1], options[2]);
         }
     }
 
     /** Global Log caller like above.
      * @param args is whole string.*/
     public static void globalLogCaller(String... args) {
-        if (cPA(1, args) && dGFE()) {
-            RepoFace.globalLogCommand();
+        long[] options = logOptions(args);
+        if (options != null && dGFE()) {
+            RepoFace.globalLogCommand(options[0], options[1], options[2]);
+        }
+    }
+
+    /** Return the options of log or global-log given in ARGS after the
+     * command: -n COUNT, --skip COUNT and --since yyyy-MM-dd (local
+     * time), as the limit, the skip and the since time in
+     * milliseconds, with defaults for those not given. Prints the
+     * usual message and returns null if they do not parse.
+     * @return is the three options.*/
+    static long[] logOptions(String... args) {
+        long[] result = {Long.MAX_VALUE, 0, Long.MIN_VALUE};
+        SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd",
+                Locale.ENGLISH);
+        day.setLenient(false);
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(args[i]);
+                }
+                switch (args[i]) {
+                case "-n" -> result[0] = count(args[i + 1]);
+                case "--skip" -> result[1] = count(args[i + 1]);
+                case "--since" ->
+                        result[2] = day.parse(args[i + 1]).getTime();
+                default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ParseException excp) {
+            System.out.println("Incorrect operands.");
+            return null;
         }
+        return result;
     }
 
     /** Find caller like above.
@@ -139,6 +383,31 @@ public class Main {
         }
     }
 
+    /** Config caller like above.
+     * @param args is whole string.*/
+    public static void configCaller(String... args) {
+        if (!dGFE()) {
+            return;
+        }
+        if (args.length == 2) {
+            RepoFace.configCommand(args[1], null);
+        } else if (args.length == 3) {
+            RepoFace.configCommand(args[1], args[2]);
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
+
+    /** Return the count written in TEXT.
+     * @return is the count, which is never negative.*/
+    private static long count(String text) {
+        long result = Long.parseLong(text);
+        if (result < 0) {
+            throw new IllegalArgumentException(text);
+        }
+        return result;
+    }
+
     /** Message if no given command is entered.*/
     static void noCommandsMessage() {
         System.out.println("Please enter a command.");
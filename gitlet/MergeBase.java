@@ -0,0 +1,141 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Class finding the best common ancestors (merge bases) of two commits
+ * over the commit-graph.
+ * Both commits are painted down their parents with their own color,
+ * newest generation first. A commit reached in both colors is a common
+ * ancestor; everything below it is marked stale, since it can only be
+ * a worse one. Because a commit's generation is above all of its
+ * ancestors', a popped commit is never reached again, so only commits
+ * waiting in the queue keep their colors and memory stays proportional
+ * to the frontier of the walk. The walk stops once every waiting commit
+ * is stale. Criss-cross histories yield several bases, none an ancestor
+ * of another.
+ * @author Katrina Sharonin.*/
+final class MergeBase {
+
+    /** Color of commits reached from the first commit. */
+    private static final int PARENT1 = 1;
+
+    /** Color of commits reached from the second commit. */
+    private static final int PARENT2 = 2;
+
+    /** Mark of commits below a common ancestor. */
+    private static final int STALE = 4;
+
+    /** Not instantiated; static functions only. */
+    private MergeBase() {
+    }
+
+    /** Return the IDs of the best common ancestors of commits ONEID and
+     * TWOID, newest generation first.
+     * @return is the list of IDs, empty for unrelated histories.*/
+    static List<String> bases(String oneID, String twoID) {
+        CommitGraph graph = CommitGraph.get();
+        List<String> result = new ArrayList<>();
+        for (int position : bases(graph, graph.position(oneID),
+                graph.position(twoID))) {
+            result.add(graph.id(position));
+        }
+        return result;
+    }
+
+    /** Return the positions in GRAPH of the best common ancestors of
+     * the commits at positions ONE and TWO, newest generation first.
+     * @return is the list of positions.*/
+    static List<Integer> bases(CommitGraph graph, int one, int two) {
+        List<Integer> result = new ArrayList<>();
+        if (one == two) {
+            result.add(one);
+            return result;
+        }
+        Frontier frontier = new Frontier(graph);
+        frontier.paint(one, PARENT1);
+        frontier.paint(two, PARENT2);
+        while (frontier.hasLive()) {
+            int position = frontier.poll();
+            int flags = frontier.take(position);
+            if ((flags & (PARENT1 | PARENT2)) == (PARENT1 | PARENT2)) {
+                if ((flags & STALE) == 0) {
+                    result.add(position);
+                }
+                flags |= STALE;
+            }
+            frontier.paint(graph.parent(position), flags);
+            frontier.paint(graph.secondParent(position), flags);
+        }
+        return result;
+    }
+
+    /** Commits waiting to be walked, newest generation first, with
+     * their colors. */
+    private static final class Frontier {
+
+        /** Graph walked. */
+        private final CommitGraph _graph;
+
+        /** Waiting positions. */
+        private final PriorityQueue<Integer> _queue;
+
+        /** Colors of each waiting position. */
+        private final HashMap<Integer, Integer> _flags = new HashMap<>();
+
+        /** Number of waiting positions that are not stale. */
+        private int _live;
+
+        /** Empty frontier over GRAPH. */
+        Frontier(CommitGraph graph) {
+            _graph = graph;
+            _queue = new PriorityQueue<>(Comparator
+                    .comparingInt((Integer p) -> _graph.generation(p))
+                    .thenComparingLong(p -> _graph.time(p))
+                    .thenComparingInt(p -> p).reversed());
+        }
+
+        /** Add the colors FLAGS to the commit at POSITION, queueing it
+         * if it is not waiting yet. Does nothing for NONE. */
+        void paint(int position, int flags) {
+            if (position == CommitGraph.NONE) {
+                return;
+            }
+            Integer old = _flags.get(position);
+            if (old == null) {
+                _flags.put(position, flags);
+                _queue.add(position);
+                _live += (flags & STALE) == 0 ? 1 : 0;
+            } else if ((old & flags) != flags) {
+                _flags.put(position, old | flags);
+                if ((old & STALE) == 0 && (flags & STALE) != 0) {
+                    _live -= 1;
+                }
+            }
+        }
+
+        /** Return true if a waiting commit is not stale.
+         * @return is boolean.*/
+        boolean hasLive() {
+            return _live > 0;
+        }
+
+        /** Return the waiting position with the newest generation.
+         * @return is the position.*/
+        int poll() {
+            return _queue.poll();
+        }
+
+        /** Return the colors of POSITION, which has just been polled,
+         * and forget them.
+         * @return is the colors.*/
+        int take(int position) {
+            int flags = _flags.remove(position);
+            _live -= (flags & STALE) == 0 ? 1 : 0;
+            return flags;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/** Class keeping the messages of all commits in one file, so find
+ * does not read every commit.
+ * The file is 4 magic bytes, the long epoch of the commit-graph it
+ * covers, an int count of records and an int count of sorted ones,
+ * then one record per commit: the 20 byte SHA-1 of its message and
+ * its 20 byte ID. The sorted records come first, in order of hash
+ * then ID, and are binary searched; a record is appended to the
+ * unsorted tail whenever a commit is saved, and the tail is sorted in
+ * once it has TAIL_LIMIT records, so saving a commit stays cheap.
+ * The index holds one record for each commit in the commit-graph; if
+ * the counts or epochs differ, or the file is missing, it is rebuilt
+ * from the graph. That catches commits saved without their record,
+ * by an older gitlet or a save cut short. Finding a message reads
+ * only the commits whose hash matches, to rule out hash collisions.
+ * @author Katrina Sharonin.*/
+final class MessageIndex {
+
+    /** Message index file in gitlet folder.*/
+    static final File INDEX_FILE =
+            Utils.join(RepoFace.GITLET_FOLDER, "messages");
+
+    /** Magic bytes starting the file, last one is version. */
+    private static final byte[] MAGIC = {'G', 'L', 'M', 2};
+
+    /** Offset of the int count of records. */
+    private static final int COUNT_AT = MAGIC.length + Long.BYTES;
+
+    /** Offset of the int count of sorted records. */
+    private static final int SORTED_AT = COUNT_AT + Integer.BYTES;
+
+    /** Bytes in front of the first record. */
+    private static final int HEADER = SORTED_AT + Integer.BYTES;
+
+    /** Bytes in each record. */
+    private static final int RECORD_SIZE = 2 * PackFile.ID_BYTES;
+
+    /** Tail records kept before sorting them in. */
+    static final int TAIL_LIMIT = 256;
+
+    /** Not instantiated; static functions only. */
+    private MessageIndex() {
+    }
+
+    /** Record the message of COMMIT, which has just been saved and
+     * added to the commit-graph. */
+    static void add(Commit commit) {
+        CommitGraph graph = CommitGraph.get();
+        MappedByteBuffer map = map();
+        if (!covers(map, graph.epoch(), graph.size() - 1)) {
+            rebuild();
+            return;
+        }
+        int count = map.getInt(COUNT_AT);
+        if (count + 1 - map.getInt(SORTED_AT) >= TAIL_LIMIT) {
+            List<byte[]> records = records(map, count);
+            records.add(record(commit).array());
+            write(records, graph.epoch());
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        header.putInt(count + 1).flip();
+        try (FileChannel out = FileChannel.open(INDEX_FILE.toPath(),
+                StandardOpenOption.WRITE)) {
+            out.write(record(commit), HEADER + (long) count * RECORD_SIZE);
+            out.write(header, COUNT_AT);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the IDs of every commit whose message is MESSAGE.
+     * @return is the sorted IDs.*/
+    static List<String> find(String message) {
+        CommitGraph graph = CommitGraph.get();
+        MappedByteBuffer map = map();
+        if (!covers(map, graph.epoch(), graph.size())) {
+            rebuild();
+            map = map();
+        }
+        byte[] wanted = PackFile.fromHex(Utils.sha1(message));
+        int count = map.getInt(COUNT_AT);
+        int sorted = map.getInt(SORTED_AT);
+        TreeSet<String> result = new TreeSet<>();
+        for (int at = lowerBound(map, sorted, wanted);
+             at < sorted && compareHash(map, at, wanted) == 0; at += 1) {
+            check(map, at, message, result);
+        }
+        for (int at = sorted; at < count; at += 1) {
+            if (compareHash(map, at, wanted) == 0) {
+                check(map, at, message, result);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Write the index afresh from the commits in the commit-graph. */
+    static void rebuild() {
+        CommitGraph graph = CommitGraph.get();
+        List<byte[]> records = new ArrayList<>(graph.size());
+        for (int i = 0; i < graph.size(); i += 1) {
+            records.add(record(Commit.getCommitFromFile(graph.id(i)))
+                    .array());
+        }
+        write(records, graph.epoch());
+    }
+
+    /** Replace the index with RECORDS, all sorted, covering the
+     * commit-graph of EPOCH. */
+    private static void write(List<byte[]> records, long epoch) {
+        records.sort(Arrays::compareUnsigned);
+        ByteBuffer all = ByteBuffer.allocate(HEADER
+                + records.size() * RECORD_SIZE);
+        all.put(MAGIC).putLong(epoch).putInt(records.size())
+                .putInt(records.size());
+        for (byte[] record : records) {
+            all.put(record);
+        }
+        File temp = new File(INDEX_FILE.getPath() + ".tmp");
+        Utils.writeContents(temp, (Object) all.array());
+        ObjectStore.moveIntoPlace(temp, INDEX_FILE);
+    }
+
+    /** Return true if MAP is a whole index of COUNT records covering
+     * the commit-graph of EPOCH. An append cut short leaves the length
+     * and count apart.
+     * @return is boolean.*/
+    private static boolean covers(MappedByteBuffer map, long epoch,
+                                  int count) {
+        if (map == null || map.limit() < HEADER) {
+            return false;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        map.get(0, magic);
+        return Arrays.equals(magic, MAGIC)
+                && map.getLong(MAGIC.length) == epoch
+                && map.getInt(COUNT_AT) == count
+                && map.limit() == HEADER + (long) count * RECORD_SIZE;
+    }
+
+    /** Map the index file.
+     * @return is the mapped file, or null if there is none.*/
+    private static MappedByteBuffer map() {
+        if (!INDEX_FILE.exists()) {
+            return null;
+        }
+        try (FileChannel in = FileChannel.open(INDEX_FILE.toPath())) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the first COUNT records of MAP.
+     * @return is the records, in file order.*/
+    private static List<byte[]> records(MappedByteBuffer map, int count) {
+        List<byte[]> result = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i += 1) {
+            byte[] record = new byte[RECORD_SIZE];
+            map.get(HEADER + i * RECORD_SIZE, record);
+            result.add(record);
+        }
+        return result;
+    }
+
+    /** Return the first of the SORTED leading records of MAP whose hash
+     * is not below WANTED, or SORTED if there is none.
+     * @return is the record number.*/
+    private static int lowerBound(MappedByteBuffer map, int sorted,
+                                  byte[] wanted) {
+        int low = 0, high = sorted;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareHash(map, mid, wanted) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Compare the hash of record AT in MAP with WANTED, as unsigned
+     * bytes.
+     * @return is negative, zero or positive as the hash is below, equal
+     * to or above WANTED.*/
+    private static int compareHash(MappedByteBuffer map, int at,
+                                   byte[] wanted) {
+        byte[] hash = new byte[PackFile.ID_BYTES];
+        map.get(HEADER + at * RECORD_SIZE, hash);
+        return Arrays.compareUnsigned(hash, wanted);
+    }
+
+    /** Add the ID of record AT in MAP to RESULT if that commit's message
+     * is MESSAGE. */
+    private static void check(MappedByteBuffer map, int at, String message,
+                              TreeSet<String> result) {
+        byte[] raw = new byte[PackFile.ID_BYTES];
+        map.get(HEADER + at * RECORD_SIZE + PackFile.ID_BYTES, raw);
+        String id = ObjectStore.toHex(raw);
+        if (message.equals(Commit.getCommitFromFile(id).getMssg())) {
+            result.add(id);
+        }
+    }
+
+    /** Return the record of COMMIT.
+     * @return is the record, ready to be written.*/
+    private static ByteBuffer record(Commit commit) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(PackFile.fromHex(Utils.sha1(commit.getMssg())))
+                .put(PackFile.fromHex(commit.getID())).flip();
+        return record;
+    }
+}
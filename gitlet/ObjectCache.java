@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** Class keeping recently read objects by ID, decoded: the content of
+ * tree nodes and blobs (deltas rebuilt) and whole Commits, so that a
+ * command reading the same object many times, as merge does with the
+ * head commit, reads and inflates it once. Entries are weighed by
+ * their bytes, a Commit by its serialized size, and the least recently
+ * used are dropped past LIMIT; entries over a quarter of LIMIT are not
+ * kept. Objects never change once written, so entries are never
+ * stale, and a daemon keeps them from one command to the next.
+ * What is handed out is shared: arrays must not be changed, and
+ * Commits never are (their snapshots are immutable).
+ * Hits and misses are counted, and show in traces (see Trace).
+ * @author Katrina Sharonin.*/
+final class ObjectCache {
+
+    /** Most bytes of content kept. */
+    static final long LIMIT = 32L << 20;
+
+    /** Entries by object ID, least recently used first. */
+    private static final LinkedHashMap<String, Entry> CONTENT =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Total weight of the entries in CONTENT. */
+    private static long bytes;
+
+    /** Number of lookups answered. */
+    private static long hits;
+
+    /** Number of lookups not answered. */
+    private static long misses;
+
+    /** Not instantiated; static functions only. */
+    private ObjectCache() {
+    }
+
+    /** Return the content of the object with ID if it is kept.
+     * @return is the content, or null.*/
+    static byte[] get(String id) {
+        return get(id, byte[].class);
+    }
+
+    /** Return the object with ID if it is kept as a TYPE.
+     * @return is the object, or null.*/
+    static synchronized <T> T get(String id, Class<T> type) {
+        Entry entry = CONTENT.get(id);
+        if (entry == null || !type.isInstance(entry._value)) {
+            misses += 1;
+            Trace.count("object cache misses", 0);
+            return null;
+        }
+        hits += 1;
+        Trace.count("object cache hits", entry._weight);
+        return type.cast(entry._value);
+    }
+
+    /** Keep CONTENT of the object with ID. */
+    static void put(String id, byte[] content) {
+        put(id, content, content.length);
+    }
+
+    /** Keep VALUE, the object with ID, as weighing WEIGHT bytes,
+     * dropping the least recently used entries past LIMIT. */
+    static synchronized void put(String id, Object value, long weight) {
+        if (weight > LIMIT / 4) {
+            return;
+        }
+        Entry old = CONTENT.put(id, new Entry(value, weight));
+        bytes += weight - (old == null ? 0 : old._weight);
+        Iterator<Entry> oldest = CONTENT.values().iterator();
+        while (bytes > LIMIT && oldest.hasNext()) {
+            bytes -= oldest.next()._weight;
+            oldest.remove();
+        }
+    }
+
+    /** Number of lookups answered so far.
+     * @return is the count.*/
+    static synchronized long hits() {
+        return hits;
+    }
+
+    /** Number of lookups not answered so far.
+     * @return is the count.*/
+    static synchronized long misses() {
+        return misses;
+    }
+
+    /** A kept object and its weight. */
+    private static final class Entry {
+
+        /** The object. */
+        private final Object _value;
+
+        /** Its weight in bytes. */
+        private final long _weight;
+
+        /** Entry of VALUE weighing WEIGHT bytes. */
+        Entry(Object value, long weight) {
+            _value = value;
+            _weight = weight;
+        }
+    }
+}
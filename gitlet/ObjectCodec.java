@@ -0,0 +1,152 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** Interface for the ways object content can be encoded on disk. The
+ * ID of the codec used is recorded in every object header, so objects
+ * written with different codecs (or none) can live side by side.
+ * New codecs only need an unused ID and an entry in forID.
+ * @author Katrina Sharonin.*/
+interface ObjectCodec {
+
+    /** ID of the codec storing content as is. */
+    byte RAW_ID = 0;
+
+    /** ID of the java.util.zip Deflate codec. */
+    byte DEFLATE_ID = 1;
+
+    /** The codec storing content unchanged. */
+    ObjectCodec RAW = new Raw();
+
+    /** Return the ID written into object headers.
+     * @return is the ID byte.*/
+    byte id();
+
+    /** Return the name used for this codec in the config file.
+     * @return is the name.*/
+    String name();
+
+    /** Wrap OUT so that bytes written through the result are encoded.
+     * Closing the result closes OUT.
+     * @return is the encoding stream.*/
+    OutputStream encode(OutputStream out) throws IOException;
+
+    /** Wrap IN so that reading the result gives decoded bytes.
+     * Closing the result closes IN.
+     * @return is the decoding stream.*/
+    InputStream decode(InputStream in) throws IOException;
+
+    /** Return the codec with header ID, for reading.
+     * @return is the codec.*/
+    static ObjectCodec forID(byte id) {
+        switch (id) {
+        case RAW_ID:
+            return RAW;
+        case DEFLATE_ID:
+            return new Deflate(Deflater.DEFAULT_COMPRESSION);
+        default:
+            throw new IllegalArgumentException("unknown object codec "
+                    + id);
+        }
+    }
+
+    /** Return the codec called NAME, compressing at LEVEL if it
+     * supports levels, for writing.
+     * @return is the codec.*/
+    static ObjectCodec forName(String name, int level) {
+        switch (name) {
+        case "none":
+            return RAW;
+        case "deflate":
+            return level == 0 ? RAW : new Deflate(level);
+        default:
+            throw new IllegalArgumentException("unknown object codec "
+                    + name);
+        }
+    }
+
+    /** Codec leaving content untouched. */
+    final class Raw implements ObjectCodec {
+
+        @Override
+        public byte id() {
+            return RAW_ID;
+        }
+
+        @Override
+        public String name() {
+            return "none";
+        }
+
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    }
+
+    /** Codec using java.util.zip Deflate at a fixed level. The level
+     * only matters when writing; any level inflates the same way. */
+    final class Deflate implements ObjectCodec {
+
+        /** Compression level, -1 or 1 to 9. */
+        private final int _level;
+
+        /** Deflate codec compressing at LEVEL. */
+        Deflate(int level) {
+            _level = level;
+        }
+
+        @Override
+        public byte id() {
+            return DEFLATE_ID;
+        }
+
+        @Override
+        public String name() {
+            return "deflate";
+        }
+
+        @Override
+        public OutputStream encode(OutputStream out) {
+            Deflater deflater = new Deflater(_level);
+            return new DeflaterOutputStream(out, deflater,
+                    ObjectStore.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater,
+                    ObjectStore.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,641 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Class handling the on disk format of objects in .gitlet. Every
+ * object file is a small fixed header followed by the stored content:
+ * 4 magic bytes ("GLT" + format version), 1 type byte, 1 codec byte
+ * and the 8 byte length of the decoded content. The codec byte says
+ * how the rest of the file is encoded (see ObjectCodec), so objects
+ * written with different settings can be read alike. Version 1 files
+ * have no codec byte and are always raw.
+ * Loose objects are sharded into subfolders by the first two hex
+ * digits of their ID (see shardFile); older repositories keep them flat
+ * and are still read.
+ * Files written before this format existed are Java serialized objects
+ * and are recognized by their stream magic so they can still be read.
+ * @author Katrina Sharonin.*/
+final class ObjectStore {
+
+    /** Magic bytes starting every object file, last one is version. */
+    static final byte[] MAGIC = {'G', 'L', 'T', 2};
+
+    /** Size of the header in front of the stored content. */
+    static final int HEADER_SIZE = MAGIC.length + 2 + Long.BYTES;
+
+    /** Size of the header of version 1 objects, which lack a codec. */
+    static final int V1_HEADER_SIZE = HEADER_SIZE - 1;
+
+    /** Type byte of a blob object. */
+    static final byte BLOB_TYPE = 1;
+
+    /** Type byte of a commit object. */
+    static final byte COMMIT_TYPE = 2;
+
+    /** Type byte of a blob stored as a delta: the content is the 20
+     * byte ID of the base blob followed by a Delta against it. */
+    static final byte DELTA_TYPE = 3;
+
+    /** Type byte of a tree node holding part of a snapshot (see
+     * Tree). */
+    static final byte TREE_TYPE = 4;
+
+    /** Types a blob may be stored as. */
+    static final byte[] BLOB_TYPES = {BLOB_TYPE, DELTA_TYPE};
+
+    /** Size of the buffers used when streaming file contents. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Buffer each thread hashes files through, so hashing many files
+     * in parallel needs one buffer per thread and no more. */
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(
+                    BUFFER_SIZE));
+
+    /** Number of leading hex digits of an ID naming its shard. */
+    static final int SHARD_LENGTH = 2;
+
+    /** First two bytes of any Java serialization stream. */
+    private static final int LEGACY_MAGIC = 0xACED;
+
+    /** Not instantiated; static functions only. */
+    private ObjectStore() {
+    }
+
+    /** Write CONTENT of object with type TYPE into LOCATION with the
+     * configured codec, replacing anything that was there. Content the
+     * codec cannot shrink is stored raw.
+     * @param location is the object file.
+     * @param type is the type byte.
+     * @param content is the raw content.*/
+    static void writeObject(File location, byte type, byte[] content) {
+        location.getParentFile().mkdirs();
+        Utils.writeContents(location, objectBytes(type, content));
+        Trace.count("objects written", content.length);
+    }
+
+    /** Return the bytes of an object of TYPE holding CONTENT, exactly
+     * as writeObject would store them.
+     * @return is header and stored content.*/
+    static byte[] objectBytes(byte type, byte[] content) {
+        ObjectCodec codec = Config.writeCodec();
+        byte[] stored = encode(codec, content);
+        if (stored.length >= content.length) {
+            codec = ObjectCodec.RAW;
+            stored = content;
+        }
+        byte[] head = header(type, codec, content.length);
+        byte[] result = Arrays.copyOf(head, head.length + stored.length);
+        System.arraycopy(stored, 0, result, head.length, stored.length);
+        return result;
+    }
+
+    /** Return the type byte of the object with ID, one of TYPES,
+     * looking in packs and then in FOLDER, or -1 if it is not found or
+     * is not in the object format.
+     * @return is the type.*/
+    static byte typeOf(String id, File folder, byte... types) {
+        ByteBuffer packed = PackFile.find(id, types);
+        if (packed != null) {
+            return packed.get(packed.position() + MAGIC.length);
+        }
+        File loose = looseFile(folder, id);
+        if (!loose.exists() || isLegacy(loose)) {
+            return -1;
+        }
+        try (InputStream in = Files.newInputStream(loose.toPath())) {
+            byte[] head = in.readNBytes(MAGIC.length + 1);
+            return head.length == MAGIC.length + 1 ? head[MAGIC.length] : -1;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Read the object with ID from a pack or from FOLDER, whatever its
+     * type, checking only that it is one of TYPES.
+     * @return is the type and decoded content.*/
+    static RawObject readStored(String id, File folder, byte... types) {
+        ByteBuffer packed = PackFile.find(id, types);
+        try (InputStream stored = packed != null ? bufferStream(packed)
+                : Files.newInputStream(looseFile(folder, id).toPath())) {
+            Header head = readHeader(stored, types);
+            DataInputStream in =
+                    new DataInputStream(head.codec.decode(stored));
+            byte[] content = new byte[Math.toIntExact(head.length)];
+            in.readFully(content);
+            Trace.count("objects read", content.length);
+            return new RawObject(head.type, content);
+        } catch (IOException | ArithmeticException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return CONTENT encoded with CODEC.
+     * @return is the encoded bytes.*/
+    static byte[] encode(ObjectCodec codec, byte[] content) {
+        if (codec.id() == ObjectCodec.RAW_ID) {
+            return content;
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream out = codec.encode(result)) {
+            out.write(content);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result.toByteArray();
+    }
+
+    /** Copy the contents of SOURCE into LOCATION as an object of TYPE
+     * without holding the contents in memory. The object is written
+     * to a temporary file first and moved into place, so a failed copy
+     * never leaves a truncated object behind.
+     * @param location is the object file.
+     * @param type is the type byte.
+     * @param source is the file whose bytes are stored.*/
+    static void writeObjectFrom(File location, byte type, File source) {
+        location.getParentFile().mkdirs();
+        File temp = new File(location.getPath() + ".tmp");
+        ObjectCodec codec = Config.writeCodec();
+        try (FileChannel in = FileChannel.open(source.toPath());
+             FileChannel out = FileChannel.open(temp.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long length = in.size();
+            Trace.count("objects written", length);
+            out.write(ByteBuffer.wrap(header(type, codec, length)));
+            if (codec.id() == ObjectCodec.RAW_ID) {
+                transferIn(in, out, HEADER_SIZE, length);
+            } else {
+                OutputStream encoded =
+                        codec.encode(Channels.newOutputStream(out));
+                copyStream(Channels.newInputStream(in), encoded, length);
+                encoded.close();
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        moveIntoPlace(temp, location);
+    }
+
+    /** Read the raw content of object file LOCATION, checking that it
+     * holds an object of type TYPE. Throws IllegalArgumentException if
+     * the file is not in the object format.
+     * @return is the decoded content without header.*/
+    static byte[] readContent(File location, byte type) {
+        try (InputStream file = Files.newInputStream(location.toPath())) {
+            Header head = readHeader(file, type);
+            DataInputStream in =
+                    new DataInputStream(head.codec.decode(file));
+            byte[] content = new byte[Math.toIntExact(head.length)];
+            in.readFully(content);
+            Trace.count("objects read", content.length);
+            return content;
+        } catch (IOException | ArithmeticException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Read the raw content of the packed object in ENTRY, which must
+     * be of type TYPE.
+     * @return is the decoded content without header.*/
+    static byte[] readContent(ByteBuffer entry, byte type) {
+        try (InputStream stored = bufferStream(entry)) {
+            Header head = readHeader(stored, type);
+            DataInputStream in =
+                    new DataInputStream(head.codec.decode(stored));
+            byte[] content = new byte[Math.toIntExact(head.length)];
+            in.readFully(content);
+            Trace.count("objects read", content.length);
+            return content;
+        } catch (IOException | ArithmeticException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Stream the content of the packed object in ENTRY, of type TYPE,
+     * into DEST, replacing what DEST held before.
+     * @param entry is the object bytes from a pack.
+     * @param type is the type byte.
+     * @param dest is the working file written.*/
+    static void copyContentTo(ByteBuffer entry, byte type, File dest) {
+        try (InputStream stored = bufferStream(entry);
+             OutputStream out = Files.newOutputStream(dest.toPath())) {
+            Header head = readHeader(stored, type);
+            copyStream(head.codec.decode(stored), out, head.length);
+            Trace.count("objects read", head.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the IDs of all objects of TYPE kept in FOLDER or in packs,
+     * sorted and without duplicates. Only the loose folder is listed;
+     * packed IDs come from the pack indexes.
+     * @return is the sorted IDs.*/
+    static List<String> allIDs(byte type, File folder) {
+        TreeSet<String> result = new TreeSet<>(PackFile.packedIDs(type));
+        result.addAll(looseObjects(folder).keySet());
+        return new ArrayList<>(result);
+    }
+
+    /** Return the IDs of up to LIMIT stored objects of TYPE, packed or
+     * loose in FOLDER, that start with PREFIX. Packs are binary
+     * searched, and of the loose objects only the shard subfolders
+     * PREFIX can lie in are listed.
+     * @return is the sorted IDs.*/
+    static List<String> idsWithPrefix(byte type, File folder,
+                                      String prefix, int limit) {
+        TreeSet<String> result = new TreeSet<>();
+        if (prefix.length() > Utils.UID_LENGTH
+                || !prefix.matches("[0-9a-f]*")) {
+            return new ArrayList<>();
+        }
+        PackFile.addWithPrefix(prefix, type, result, limit);
+        String[] names = folder.list();
+        for (String name : names == null ? new String[0] : names) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (name.length() == Utils.UID_LENGTH) {
+                if (name.startsWith(prefix)) {
+                    result.add(name);
+                }
+            } else if (name.length() == SHARD_LENGTH
+                    && (prefix.startsWith(name) || name.startsWith(prefix))) {
+                String[] rest = new File(folder, name).list();
+                for (String restName : rest == null ? new String[0] : rest) {
+                    String id = name + restName;
+                    if (id.length() == Utils.UID_LENGTH
+                            && id.startsWith(prefix)
+                            && result.size() < limit) {
+                        result.add(id);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Return the file the loose object with ID is written to inside
+     * FOLDER: the subfolder named by the first SHARD_LENGTH hex digits
+     * of ID, holding a file named by the rest of it.
+     * @return is the sharded object file.*/
+    static File shardFile(File folder, String id) {
+        return Utils.join(folder, id.substring(0, SHARD_LENGTH),
+                id.substring(SHARD_LENGTH));
+    }
+
+    /** Return the file holding the loose object with ID in FOLDER.
+     * Objects live in shard subfolders (see shardFile), but repositories
+     * from before sharding keep them flat in FOLDER, so that is tried
+     * when the sharded file is missing. If neither exists the sharded
+     * file is returned.
+     * @return is the object file.*/
+    static File looseFile(File folder, String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return Utils.join(folder, id);
+        }
+        File sharded = shardFile(folder, id);
+        if (sharded.exists()) {
+            return sharded;
+        }
+        File flat = Utils.join(folder, id);
+        return flat.exists() ? flat : sharded;
+    }
+
+    /** Return the ID of the loose object in file LOCATION, sharded or
+     * flat.
+     * @return is the ID.*/
+    static String looseID(File location) {
+        String name = location.getName();
+        if (name.length() == Utils.UID_LENGTH) {
+            return name;
+        }
+        return location.getParentFile().getName() + name;
+    }
+
+    /** Delete the loose object file LOCATION, sharded or flat, and its
+     * shard subfolder if that is left empty. */
+    static void deleteLoose(File location) {
+        location.delete();
+        if (location.getName().length() != Utils.UID_LENGTH) {
+            location.getParentFile().delete();
+        }
+    }
+
+    /** Return every loose object in FOLDER, sharded or flat, by ID.
+     * Only the shard subfolders and object files are listed; where an
+     * object is in both places the sharded file wins.
+     * @return is the object files, sorted by ID.*/
+    static TreeMap<String, File> looseObjects(File folder) {
+        TreeMap<String, File> result = new TreeMap<>();
+        File[] entries = folder.listFiles();
+        if (entries == null) {
+            return result;
+        }
+        for (File entry : entries) {
+            String name = entry.getName();
+            if (name.length() == Utils.UID_LENGTH) {
+                result.putIfAbsent(name, entry);
+            } else if (name.length() == SHARD_LENGTH
+                    && entry.isDirectory()) {
+                String[] rest = entry.list();
+                for (String restName : rest == null ? new String[0] : rest) {
+                    if (restName.length()
+                            == Utils.UID_LENGTH - SHARD_LENGTH) {
+                        result.put(name + restName,
+                                new File(entry, restName));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return an input stream over the remaining bytes of BUFFER.
+     * @return is the stream.*/
+    private static InputStream bufferStream(ByteBuffer buffer) {
+        ByteBuffer source = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int off, int len) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int step = Math.min(len, source.remaining());
+                source.get(bytes, off, step);
+                return step;
+            }
+        };
+    }
+
+    /** Stream the content of object file LOCATION, which must hold an
+     * object of TYPE, into DEST, replacing what DEST held before.
+     * Raw objects are copied by the kernel; encoded ones through a
+     * fixed size buffer.
+     * @param location is the object file.
+     * @param type is the type byte.
+     * @param dest is the working file written.*/
+    static void copyContentTo(File location, byte type, File dest) {
+        try (FileChannel in = FileChannel.open(location.toPath());
+             FileChannel out = FileChannel.open(dest.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            InputStream stored = Channels.newInputStream(in);
+            Header head = readHeader(stored, type);
+            if (head.codec.id() == ObjectCodec.RAW_ID) {
+                transferOut(in, head.size, head.length, out);
+            } else {
+                copyStream(head.codec.decode(stored),
+                        Channels.newOutputStream(out), head.length);
+            }
+            Trace.count("objects read", head.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Have the kernel append all LENGTH bytes of IN to OUT, where they
+     * start at POSITION. */
+    private static void transferIn(FileChannel in, FileChannel out,
+                                   long position, long length)
+            throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long step = out.transferFrom(in, position + copied,
+                    length - copied);
+            if (step <= 0) {
+                throw new IOException("file changed while copying");
+            }
+            copied += step;
+        }
+    }
+
+    /** Have the kernel copy LENGTH bytes of IN starting at POSITION
+     * into OUT. */
+    private static void transferOut(FileChannel in, long position,
+                                    long length, FileChannel out)
+            throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long step = in.transferTo(position + copied,
+                    length - copied, out);
+            if (step <= 0) {
+                throw new IOException("object is truncated");
+            }
+            copied += step;
+        }
+    }
+
+    /** Copy exactly LENGTH bytes from IN to OUT through a buffer. */
+    private static void copyStream(InputStream in, OutputStream out,
+                                   long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long left = length;
+        while (left > 0) {
+            int step = in.read(buffer, 0,
+                    (int) Math.min(buffer.length, left));
+            if (step < 0) {
+                throw new IOException("file changed while copying");
+            }
+            out.write(buffer, 0, step);
+            left -= step;
+        }
+        out.flush();
+    }
+
+    /** Return the SHA-1 of the contents of SOURCE, read through a fixed
+     * size buffer so files larger than the heap can be hashed. Gives the
+     * same value as Utils.sha1 on the whole contents.
+     * @return is the hash in hex.*/
+    static String sha1(File source) {
+        try (FileChannel in = FileChannel.open(source.toPath())) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buffer = HASH_BUFFER.get().clear();
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+            Trace.count("files hashed", in.size());
+            return toHex(md.digest());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not "
+                    + "support SHA-1");
+        }
+    }
+
+    /** Format BYTES as lower case hex, as used for IDs.
+     * @return is the hex string.*/
+    static String toHex(byte[] bytes) {
+        return toHex(bytes, 0, bytes.length);
+    }
+
+    /** Format the LENGTH bytes of BYTES from OFFSET as lower case hex.
+     * @return is the hex string.*/
+    static String toHex(byte[] bytes, int offset, int length) {
+        StringBuilder result = new StringBuilder(length * 2);
+        for (int i = offset; i < offset + length; i += 1) {
+            result.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+            result.append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /** Replace TARGET by TEMP, atomically where the file system
+     * allows it. */
+    static void moveIntoPlace(File temp, File target) {
+        try {
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            try {
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException again) {
+                throw new IllegalArgumentException(again.getMessage());
+            }
+        }
+    }
+
+    /** Build the header for an object of TYPE holding LENGTH bytes
+     * once decoded with CODEC.
+     * @return is the header as bytes.*/
+    static byte[] header(byte type, ObjectCodec codec, long length) {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        head.put(MAGIC).put(type).put(codec.id()).putLong(length);
+        return head.array();
+    }
+
+    /** Read the header at the front of IN and check it against TYPE,
+     * leaving IN at the first byte of stored content.
+     * @return is the header found.*/
+    static Header readHeader(InputStream in, byte... types)
+            throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        for (int i = 0; i < MAGIC.length - 1; i += 1) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("not a gitlet object");
+            }
+        }
+        byte version = magic[MAGIC.length - 1];
+        if (version != 1 && version != MAGIC[MAGIC.length - 1]) {
+            throw new IOException("unsupported object version " + version);
+        }
+        byte type = data.readByte();
+        boolean expected = false;
+        for (byte wanted : types) {
+            expected |= wanted == type;
+        }
+        if (!expected) {
+            throw new IOException("unexpected object type");
+        }
+        if (version == 1) {
+            return new Header(type, ObjectCodec.RAW, data.readLong(),
+                    V1_HEADER_SIZE);
+        }
+        ObjectCodec codec = ObjectCodec.forID(data.readByte());
+        return new Header(type, codec, data.readLong(), HEADER_SIZE);
+    }
+
+    /** Return true if LOCATION was written by Java serialization,
+     * i.e. it predates the raw object format.
+     * @return is boolean.*/
+    static boolean isLegacy(File location) {
+        try (InputStream in = Files.newInputStream(location.toPath())) {
+            int first = in.read();
+            int second = in.read();
+            return ((first << 8) | second) == LEGACY_MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Parsed object header. */
+    static final class Header {
+
+        /** Type byte of the object. */
+        private final byte type;
+
+        /** Codec the content was stored with. */
+        private final ObjectCodec codec;
+
+        /** Length of the decoded content. */
+        private final long length;
+
+        /** Number of header bytes in front of the stored content. */
+        private final int size;
+
+        /** Header of an object of TYPE whose content of LENGTH bytes
+         * is stored with CODEC after SIZE header bytes. */
+        Header(byte type, ObjectCodec codec, long length, int size) {
+            this.type = type;
+            this.codec = codec;
+            this.length = length;
+            this.size = size;
+        }
+
+        /** Return the decoded content length.
+         * @return is the length.*/
+        long length() {
+            return length;
+        }
+    }
+
+    /** An object read whole: its type byte and decoded content. */
+    static final class RawObject {
+
+        /** Type byte of the object. */
+        private final byte _type;
+
+        /** Decoded content. */
+        private final byte[] _content;
+
+        /** Object of TYPE holding CONTENT. */
+        RawObject(byte type, byte[] content) {
+            _type = type;
+            _content = content;
+        }
+
+        /** Return the type byte.
+         * @return is the type.*/
+        byte type() {
+            return _type;
+        }
+
+        /** Return the decoded content.
+         * @return is the content.*/
+        byte[] content() {
+            return _content;
+        }
+    }
+}
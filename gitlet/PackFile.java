@@ -0,0 +1,434 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/** Class representing one pack: many objects consolidated into a
+ * single file, with an index for finding them. Both files are memory
+ * mapped read only.
+ * The .pack file is 4 magic bytes, an int count and then every object
+ * exactly as its loose file would hold it (header and stored content).
+ * The .idx file is 4 magic bytes, an int count, a 256 entry fanout
+ * table (entry i is the number of IDs whose first byte is at most i),
+ * then in ID order: the 20 byte IDs, the type bytes, the 8 byte
+ * offsets and the 8 byte lengths of the objects in the pack. An ID is
+ * found by binary search in the slice of IDs its first byte selects.
+ * Objects of different kinds may share an ID, since blob IDs hash bare
+ * content; such objects sit next to each other, and lookups say which
+ * types they want.
+ * @author Katrina Sharonin.*/
+final class PackFile {
+
+    /** Packs folder in gitlet folder.*/
+    static final File PACKS_FOLDER =
+            Utils.join(RepoFace.GITLET_FOLDER, "packs");
+
+    /** Magic bytes starting a pack. */
+    private static final byte[] PACK_MAGIC = {'G', 'L', 'P', 1};
+
+    /** Magic bytes starting a pack index. */
+    private static final byte[] INDEX_MAGIC = {'G', 'L', 'P', 'I'};
+
+    /** Largest pack written, kept below what one mapping can cover. */
+    static final long MAX_PACK_BYTES = Integer.MAX_VALUE - (1 << 20);
+
+    /** Bytes in a binary object ID. */
+    static final int ID_BYTES = Utils.UID_LENGTH / 2;
+
+    /** Bytes in front of the fanout table of an index. */
+    private static final int INDEX_HEADER = INDEX_MAGIC.length
+            + Integer.BYTES;
+
+    /** Offset of the first ID in an index. */
+    private static final int IDS_START = INDEX_HEADER + 256 * Integer.BYTES;
+
+    /** All packs of this repository, loaded on first use. */
+    private static List<PackFile> packs;
+
+    /** Mapped .pack file. */
+    private final MappedByteBuffer _pack;
+
+    /** Mapped .idx file. */
+    private final MappedByteBuffer _index;
+
+    /** Number of objects in the pack. */
+    private final int _count;
+
+    /** Pack whose index is INDEXFILE and content PACKFILE. */
+    private PackFile(File packFile, File indexFile) {
+        _pack = map(packFile);
+        _index = map(indexFile);
+        byte[] magic = new byte[INDEX_MAGIC.length];
+        _index.get(0, magic);
+        if (!Arrays.equals(magic, INDEX_MAGIC)) {
+            throw new IllegalArgumentException("bad pack index "
+                    + indexFile);
+        }
+        _count = _index.getInt(INDEX_MAGIC.length);
+    }
+
+    /** Return every pack in PACKS_FOLDER.
+     * @return is the loaded packs.*/
+    static List<PackFile> packs() {
+        if (packs == null) {
+            packs = new ArrayList<>();
+            List<String> names = Utils.plainFilenamesIn(PACKS_FOLDER);
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".idx")) {
+                        String base = name.substring(0,
+                                name.length() - ".idx".length());
+                        packs.add(new PackFile(
+                                Utils.join(PACKS_FOLDER, base + ".pack"),
+                                Utils.join(PACKS_FOLDER, name)));
+                    }
+                }
+            }
+        }
+        return packs;
+    }
+
+    /** Return the stored object with hex ID and one of TYPES from any
+     * pack, as a buffer holding its header and stored content, or null
+     * if no pack has it.
+     * @return is the object bytes.*/
+    static ByteBuffer find(String id, byte... types) {
+        if (packs().isEmpty() || id.length() != Utils.UID_LENGTH) {
+            return null;
+        }
+        byte[] key = fromHex(id);
+        for (PackFile pack : packs()) {
+            int position = pack.position(key, types);
+            if (position >= 0) {
+                return pack.entry(position);
+            }
+        }
+        return null;
+    }
+
+    /** Return true if some pack holds the object with hex ID and one
+     * of TYPES.
+     * @return is boolean.*/
+    static boolean contains(String id, byte... types) {
+        return find(id, types) != null;
+    }
+
+    /** Return the key a new pack's entries are sorted and told apart
+     * by: hex ID then kind, a blob stored whole or as a delta being the
+     * same kind. Objects of different kinds with one ID get different
+     * keys.
+     * @return is the key.*/
+    static String key(String id, byte type) {
+        return id + (type == ObjectStore.DELTA_TYPE
+                ? ObjectStore.BLOB_TYPE : type);
+    }
+
+    /** Return the hex IDs of every packed object of TYPE, unsorted
+     * across packs.
+     * @return is the list of IDs.*/
+    static List<String> packedIDs(byte type) {
+        List<String> result = new ArrayList<>();
+        for (PackFile pack : packs()) {
+            for (int i = 0; i < pack._count; i += 1) {
+                if (pack.type(i) == type) {
+                    result.add(pack.id(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Add to RESULT the hex IDs of packed objects of TYPE starting
+     * with the lower case hex PREFIX, until it holds LIMIT. Each pack is
+     * binary searched for the first ID not below PREFIX. */
+    static void addWithPrefix(String prefix, byte type,
+                              Collection<String> result, int limit) {
+        StringBuilder padded = new StringBuilder(prefix);
+        while (padded.length() < Utils.UID_LENGTH) {
+            padded.append('0');
+        }
+        byte[] key = fromHex(padded.toString());
+        for (PackFile pack : packs()) {
+            int low = 0;
+            int high = pack._count;
+            byte[] probe = new byte[ID_BYTES];
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                pack._index.get(IDS_START + mid * ID_BYTES, probe);
+                if (Arrays.compareUnsigned(probe, key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < pack._count && result.size() < limit;
+                 i += 1) {
+                String id = pack.id(i);
+                if (!id.startsWith(prefix)) {
+                    break;
+                }
+                if (pack.type(i) == type) {
+                    result.add(id);
+                }
+            }
+        }
+    }
+
+    /** Return where KEY, of one of TYPES, sits in this pack's index,
+     * or -1.
+     * @return is the position.*/
+    int position(byte[] key, byte... types) {
+        int found = position(key);
+        if (found < 0) {
+            return -1;
+        }
+        byte[] probe = new byte[ID_BYTES];
+        int first = found;
+        while (first > 0) {
+            _index.get(IDS_START + (first - 1) * ID_BYTES, probe);
+            if (!Arrays.equals(probe, key)) {
+                break;
+            }
+            first -= 1;
+        }
+        for (int i = first; i < _count; i += 1) {
+            _index.get(IDS_START + i * ID_BYTES, probe);
+            if (!Arrays.equals(probe, key)) {
+                break;
+            }
+            for (byte type : types) {
+                if (type(i) == type) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Return where KEY sits in this pack's index, or -1. Of objects
+     * sharing KEY, any may be found.
+     * @return is the position.*/
+    private int position(byte[] key) {
+        int bucket = key[0] & 0xFF;
+        int low = bucket == 0 ? 0 : fanout(bucket - 1);
+        int high = fanout(bucket) - 1;
+        byte[] probe = new byte[ID_BYTES];
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            _index.get(IDS_START + mid * ID_BYTES, probe);
+            int cmp = Arrays.compareUnsigned(probe, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return fanout table entry BUCKET.
+     * @return is count of IDs with first byte at most BUCKET.*/
+    private int fanout(int bucket) {
+        return _index.getInt(INDEX_HEADER + bucket * Integer.BYTES);
+    }
+
+    /** Return the hex ID at POSITION of the index.
+     * @return is the ID.*/
+    String id(int position) {
+        byte[] raw = new byte[ID_BYTES];
+        _index.get(IDS_START + position * ID_BYTES, raw);
+        return ObjectStore.toHex(raw);
+    }
+
+    /** Return the type byte of the object at POSITION.
+     * @return is the type.*/
+    byte type(int position) {
+        return _index.get(IDS_START + _count * ID_BYTES + position);
+    }
+
+    /** Return the bytes of the object at POSITION of the index.
+     * @return is a read only slice of the pack.*/
+    ByteBuffer entry(int position) {
+        int offsets = IDS_START + _count * (ID_BYTES + 1);
+        long offset = _index.getLong(offsets + position * Long.BYTES);
+        long length = _index.getLong(offsets + _count * Long.BYTES
+                + position * Long.BYTES);
+        return _pack.slice(Math.toIntExact(offset),
+                Math.toIntExact(length)).asReadOnlyBuffer();
+    }
+
+    /** Number of objects in this pack.
+     * @return is the count.*/
+    int size() {
+        return _count;
+    }
+
+    /** Write a new pack holding ENTRIES, which must be sorted by key
+     * (see key) and total at most MAX_PACK_BYTES, into PACKS_FOLDER. Each
+     * entry's bytes are those of a loose object.
+     * @return is the base name of the written files.*/
+    static String write(List<Entry> entries) {
+        PACKS_FOLDER.mkdir();
+        StringBuilder allIDs = new StringBuilder();
+        for (Entry entry : entries) {
+            allIDs.append(entry._id);
+        }
+        String base = "pack-" + Utils.sha1(allIDs.toString());
+        File packFile = Utils.join(PACKS_FOLDER, base + ".pack");
+        File indexFile = Utils.join(PACKS_FOLDER, base + ".idx");
+        File packTemp = new File(packFile.getPath() + ".tmp");
+        File indexTemp = new File(indexFile.getPath() + ".tmp");
+        int count = entries.size();
+        long[] offsets = new long[count];
+        long[] lengths = new long[count];
+        byte[] types = new byte[count];
+        try (FileChannel out = open(packTemp)) {
+            out.write(ByteBuffer.allocate(PACK_MAGIC.length
+                    + Integer.BYTES).put(PACK_MAGIC).putInt(count).flip());
+            for (int i = 0; i < count; i += 1) {
+                offsets[i] = out.position();
+                types[i] = entries.get(i).writeTo(out);
+                lengths[i] = out.position() - offsets[i];
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ByteBuffer index = ByteBuffer.allocate(IDS_START
+                + count * (ID_BYTES + 1 + 2 * Long.BYTES));
+        index.put(INDEX_MAGIC).putInt(count);
+        int[] fanout = new int[256];
+        for (Entry entry : entries) {
+            fanout[fromHex(entry._id)[0] & 0xFF] += 1;
+        }
+        int running = 0;
+        for (int bucket = 0; bucket < 256; bucket += 1) {
+            running += fanout[bucket];
+            index.putInt(running);
+        }
+        for (Entry entry : entries) {
+            index.put(fromHex(entry._id));
+        }
+        index.put(types);
+        for (long offset : offsets) {
+            index.putLong(offset);
+        }
+        for (long length : lengths) {
+            index.putLong(length);
+        }
+        try (FileChannel out = open(indexTemp)) {
+            index.flip();
+            while (index.hasRemaining()) {
+                out.write(index);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ObjectStore.moveIntoPlace(packTemp, packFile);
+        ObjectStore.moveIntoPlace(indexTemp, indexFile);
+        packs = null;
+        return base;
+    }
+
+    /** Forget the loaded packs so the next lookup rereads the folder. */
+    static void reload() {
+        packs = null;
+    }
+
+    /** Return HEX as the 20 bytes it spells.
+     * @return is the binary ID.*/
+    static byte[] fromHex(String hex) {
+        byte[] result = new byte[ID_BYTES];
+        for (int i = 0; i < ID_BYTES; i += 1) {
+            result[i] = (byte) Integer.parseInt(
+                    hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+
+    /** Open FILE for writing from scratch.
+     * @return is the channel.*/
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** Map all of FILE read only.
+     * @return is the mapping.*/
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** One object going into a new pack: its ID and where its bytes
+     * come from, a loose file or a slice of an existing pack. */
+    static final class Entry {
+
+        /** Hex ID of the object. */
+        private final String _id;
+
+        /** Loose file holding the object, or null. */
+        private final File _loose;
+
+        /** Bytes of the object in an existing pack, or null. */
+        private final ByteBuffer _packed;
+
+        /** Entry for object ID read from LOOSE or PACKED. */
+        Entry(String id, File loose, ByteBuffer packed) {
+            _id = id;
+            _loose = loose;
+            _packed = packed;
+        }
+
+        /** Return the hex ID.
+         * @return is the ID.*/
+        String id() {
+            return _id;
+        }
+
+        /** Return the size of the object in bytes.
+         * @return is the size.*/
+        long size() {
+            return _packed != null ? _packed.remaining() : _loose.length();
+        }
+
+        /** Append the object's bytes to OUT.
+         * @return is the object's type byte.*/
+        byte writeTo(FileChannel out) throws IOException {
+            if (_packed != null) {
+                ByteBuffer bytes = _packed.duplicate();
+                byte type = bytes.get(bytes.position()
+                        + ObjectStore.MAGIC.length);
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                return type;
+            }
+            try (FileChannel in = FileChannel.open(_loose.toPath())) {
+                ByteBuffer head = ByteBuffer.allocate(
+                        ObjectStore.MAGIC.length + 1);
+                in.read(head, 0);
+                long length = in.size();
+                long copied = 0;
+                while (copied < length) {
+                    copied += in.transferTo(copied, length - copied, out);
+                }
+                return head.get(ObjectStore.MAGIC.length);
+            }
+        }
+    }
+}
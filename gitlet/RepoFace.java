@@ -1,6 +1,8 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.TreeMap;
@@ -9,6 +11,9 @@ import java.util.Collections;
 import java.util.ArrayList;
 import java.io.File;
 import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
 
 /** Class representing our Repository that faces user;
  * holds all interactions between
@@ -57,15 +62,8 @@ public class RepoFace implements Serializable {
     /** The current index of this repository. */
     private static Index currIndex = existingStage();
 
-    /** Depth mapping tree for split point.*/
-    private static TreeMap<String, Integer> depthInCurrent =
-            new TreeMap<>();
-
-    /** Split point helper var.*/
-    private static Integer minimizedDepth = 1000;
-
-    /** Split point capture var.*/
-    private static String minimizingHash = "";
+    /** True while a batch of commands runs in this process. */
+    private static boolean batching;
 
     /** Check persistence to see if a index exists.
      * If so, load it. If not
@@ -73,13 +71,51 @@ public class RepoFace implements Serializable {
      * @return is our current stage.*/
 
     public static Index existingStage() {
-        if (INDEX_FILE.exists()) {
-            return Utils.readObject(INDEX_FILE, Index.class);
+        return Index.load(INDEX_FILE);
+    }
+
+    /** Save the index, unless a batch is running, which saves it once
+     * when it ends. */
+    private static void saveStage() {
+        if (!batching) {
+            currIndex.saveIndex();
+        }
+    }
+
+    /** Start a batch: until it ends the index is only changed in
+     * memory. */
+    static void beginBatch() {
+        batching = true;
+    }
+
+    /** Remember the index before a batched command runs. */
+    static void markBatch() {
+        currIndex.mark();
+    }
+
+    /** Undo what the batched command run since the last markBatch did
+     * to the index, since it ended early. */
+    static void rollbackBatch() {
+        currIndex.rollback();
+    }
+
+    /** End a batch. If SAVE, save the index as one new file that
+     * replaces the old, so it is either all saved or not at all;
+     * otherwise drop what the batch did to it. */
+    static void endBatch(boolean save) {
+        batching = false;
+        if (save) {
+            currIndex.saveIndexAtomically();
         } else {
-            return new Index();
+            reloadIndex();
         }
     }
 
+    /** Reload the index, which another process has changed. */
+    static void reloadIndex() {
+        currIndex = existingStage();
+    }
+
     /** Command which officially creates the hidden
      * directories of .gitlet and
      * all under. Also initiate tree maps
@@ -90,28 +126,29 @@ public class RepoFace implements Serializable {
             System.out.println("A Gitlet version-control "
                     + "system already exists "
                     + "in the current directory.");
-            System.exit(0);
+            Main.exit();
         } else {
 
             GITLET_FOLDER.mkdir();
             BLOBS_FOLDER.mkdir();
             COMMITS_FOLDER.mkdir();
+            Tree.TREES_FOLDER.mkdir();
             BRANCHES_FOLDER.mkdir();
 
             try {
                 INDEX_FILE.createNewFile();
             } catch (IOException error) {
-                System.exit(0);
+                Main.exit();
             }
             try {
                 headd.createNewFile();
             } catch (IOException error) {
-                System.exit(0);
+                Main.exit();
             }
             try {
                 currentBranchh.createNewFile();
             } catch (IOException error) {
-                System.exit(0);
+                Main.exit();
             }
 
             Commit firstCommit = new Commit();
@@ -139,7 +176,7 @@ public class RepoFace implements Serializable {
             try {
                 writeIn.createNewFile();
             } catch (IOException error) {
-                System.exit(0);
+                Main.exit();
             }
         }
         Utils.writeContents(writeIn,
@@ -158,14 +195,14 @@ public class RepoFace implements Serializable {
 
         if (!addThis.exists()) {
             System.out.println("File does not exist.");
-            System.exit(0);
+            Main.exit();
         }
 
         boolean trueChange = currIndex.
                 addtoIndex(addThis);
 
         if (trueChange) {
-            currIndex.saveIndex();
+            saveStage();
         }
     }
 
@@ -174,58 +211,36 @@ public class RepoFace implements Serializable {
      * pays attention to added index. Compare added
      * versus previous commit. Commit object will
      * always start as a duplicate of the previous
-     * commit in the branch (head)
+     * commit in the branch (head); only the tree nodes
+     * of staged names are rewritten, the rest is shared.
      * @param message is given mssg by user.*/
 
+    @SuppressWarnings("try")
     public static void commitCommand(String message) {
         if (currIndex.isClear()) {
             System.out.println("No changes "
                     + "added to the commit.");
-            System.exit(0);
+            Main.exit();
         }
         if (message.equals("")) {
             System.out.println("Please enter "
                     + "a commit message.");
-            System.exit(0);
+            Main.exit();
         }
         Commit prevHead = readHeadFile();
         String prevID = prevHead.getID();
-        TreeMap<String, String> currAddedIndex =
-                currIndex.currAddedStage();
-        TreeMap<String, String> currRemovedIndex =
-                currIndex.currRemovedStage();
-        TreeMap<String, String> prevCommitSnapshot =
-                prevHead.getSnapshot();
-        for (String fileName : currAddedIndex.keySet()) {
-            if (!prevCommitSnapshot.containsKey(fileName)) {
-                String addedHashVer =
-                        currAddedIndex.get(fileName);
-                prevCommitSnapshot.
-                        put(fileName, addedHashVer);
-            } else {
-                String addedHash =
-                        currAddedIndex.get(fileName);
-                String prevHash =
-                        prevCommitSnapshot.get(fileName);
-                if (!addedHash.equals(prevHash)) {
-                    prevCommitSnapshot.remove(fileName);
-                    prevCommitSnapshot.put(fileName, addedHash);
-                }
-            }
-        }
-        for (String fileName : currRemovedIndex.keySet()) {
-            if (prevCommitSnapshot.
-                    containsKey(fileName)) {
-                prevCommitSnapshot.
-                        remove(fileName);
-            }
+        TreeMap<String, String> changes =
+                new TreeMap<>(currIndex.currAddedStage());
+        for (String fileName : currIndex.currRemovedStage().keySet()) {
+            changes.put(fileName, null);
         }
         currIndex.clear();
-        currIndex.saveIndex();
-        Commit newCommit =
-                new Commit(message,
-                        prevCommitSnapshot,
-                        "", prevID);
+        saveStage();
+        String tree;
+        try (Trace.Span span = Trace.span("update tree")) {
+            tree = Tree.update(prevHead.getTree(), changes);
+        }
+        Commit newCommit = new Commit(message, tree, "", prevID);
         String newCommitID = newCommit.getID();
         writeInHashIntoNewFile(newCommitID, headd);
         String currBranchyName = readFileGetBranch();
@@ -242,10 +257,8 @@ public class RepoFace implements Serializable {
     public static Commit readHeadFile() {
         String readID =
                 Utils.readContentsAsString(headd);
-        File findCommit =
-                Utils.join(COMMITS_FOLDER, readID);
         Commit foundCommit =
-                Utils.readObject(findCommit, Commit.class);
+                Commit.getCommitFromFile(readID);
         return foundCommit;
     }
 
@@ -275,48 +288,41 @@ public class RepoFace implements Serializable {
                 pathToFile.createNewFile();
             }
         } catch (IOException error) {
-            System.exit(0);
+            Main.exit();
         }
-        Blob fileToMakeBlob = new Blob(pathToFile);
-        String newBlobID = fileToMakeBlob.blobID();
-        String fileNameOrg =
-                fileToMakeBlob.getSourceFileName();
+        String newBlobID = currIndex.hashOf(pathToFile);
+        String fileNameOrg = pathToFile.getName();
         String currentBranchName =
                 Utils.readContentsAsString(currentBranchh);
         File currBranchPath =
                 Utils.join(BRANCHES_FOLDER, currentBranchName);
         Branches currBranchObject =
-                Utils.readObject(currBranchPath, Branches.class);
+                Branches.readBranchFile(currBranchPath);
         Commit currBranchLeadCommit =
                 currBranchObject.getCurrCommit();
         Commit currHeadCommit = currBranchLeadCommit;
-        TreeMap<String, String> mapOfHeadCommit =
+        Snapshot mapOfHeadCommit =
                 currHeadCommit.getSnapshot();
-        TreeMap<String, String> currentAdded =
-                currIndex.currAddedStage();
-        TreeMap<String, String> currentRemoved =
-                currIndex.currRemovedStage();
         boolean fileIsStaged =
-                currentAdded.containsKey(fileNameOrg);
+                currIndex.currAddedStage().containsKey(fileNameOrg);
         boolean fileIsTrackedByHead =
                 mapOfHeadCommit.containsKey(fileNameOrg);
         if (!fileIsStaged && !fileIsTrackedByHead) {
             System.out.println("No reason "
                     + "to remove the file.");
-            System.exit(0);
+            Main.exit();
         }
         if (fileIsStaged) {
-            currentAdded.remove(fileNameOrg);
+            currIndex.unstage(fileNameOrg);
             changed = true;
         }
         if (fileIsTrackedByHead) {
-            mapOfHeadCommit.remove(fileNameOrg);
-            currentRemoved.put(fileNameOrg, newBlobID);
+            currIndex.stageRemoval(fileNameOrg, newBlobID);
             Utils.restrictedDelete(fileNameOrg);
             changed = true;
         }
         if (changed) {
-            currIndex.saveIndex();
+            saveStage();
         }
     }
 
@@ -325,44 +331,73 @@ public class RepoFace implements Serializable {
      * along the commit tree until the initial commit,
      * following the first parent commit links,
      * ignoring any second parents
-     * found in merge commits.*/
-
-    public static void logCommand() {
-        Commit currHead = readHeadFile();
-        Commit tempCurr = currHead;
-
-        while (tempCurr != null) {
-            Commit.printCommitObject(tempCurr);
-            if (tempCurr.getParentLink() != null) {
-                File findParent =
-                        Utils.join(COMMITS_FOLDER,
-                                tempCurr.getParentLink());
-                tempCurr =
-                        Utils.readObject(findParent,
-                                Commit.class);
-            } else {
+     * found in merge commits.
+     * The first SKIP commits are left out, at most LIMIT are shown,
+     * and the walk stops at the first commit made before SINCE. Only
+     * the commits shown are read, so a first page costs the same
+     * however long history is.
+     * @param limit is the most commits shown.
+     * @param skip is the number of commits left out first.
+     * @param since is the oldest time shown, in milliseconds.*/
+
+    public static void logCommand(long limit, long skip, long since) {
+        PrintStream out = bufferedOut();
+        String id = Utils.readContentsAsString(headd);
+        long shown = 0;
+        while (id != null && shown < limit) {
+            Commit tempCurr = Commit.getCommitFromFile(id);
+            if (tempCurr.getTime() < since) {
                 break;
             }
-
+            if (skip > 0) {
+                skip -= 1;
+            } else {
+                Commit.printCommitObject(tempCurr, out);
+                shown += 1;
+            }
+            id = tempCurr.getParentLink();
         }
+        out.flush();
     }
 
 
     /**  Like log, except displays information
-     * about all commits ever made.
-     * The order of the commits does not matter.
-     * Hint: there is a useful method in gitlet.
-     * Utils that will help you
-     * iterate over files within a directory.*/
-    public static void globalLogCommand() {
-
-        List<String> eachCommitInDir =
-                Utils.plainFilenamesIn(COMMITS_FOLDER);
-        for (String commitUnique : eachCommitInDir) {
-            Commit currCommit =
-                    Commit.getCommitFromFile(commitUnique);
-            Commit.printCommitObject(currCommit);
+     * about all commits ever made, newest first.
+     * The commits are streamed backwards from the commit-graph, which
+     * lists them in the order they were made, so there is no folder
+     * listing or sort and nothing is held but the commit printed.
+     * SKIP, LIMIT and SINCE work as for log, except that older commits
+     * are only left out, as clocks may disagree.
+     * @param limit is the most commits shown.
+     * @param skip is the number of commits left out first.
+     * @param since is the oldest time shown, in milliseconds.*/
+    public static void globalLogCommand(long limit, long skip,
+                                        long since) {
+        PrintStream out = bufferedOut();
+        CommitGraph graph = CommitGraph.get();
+        long shown = 0;
+        for (int position = graph.size() - 1;
+             position >= 0 && shown < limit; position -= 1) {
+            if (graph.time(position) < since) {
+                continue;
+            }
+            if (skip > 0) {
+                skip -= 1;
+                continue;
+            }
+            Commit.printCommitObject(
+                    Commit.getCommitFromFile(graph.id(position)), out);
+            shown += 1;
         }
+        out.flush();
+    }
+
+    /** Return a stream over standard output that writes in large
+     * blocks, for commands printing many lines. It must be flushed.
+     * @return is the stream.*/
+    static PrintStream bufferedOut() {
+        return new PrintStream(new BufferedOutputStream(
+                System.out, 1 << 16), false);
     }
 
     /** Prints out the ids of all commits
@@ -372,27 +407,35 @@ public class RepoFace implements Serializable {
      * The commit message is a single operand;
      * to indicate a multiword message,
      * put the operand in quotation marks,
-     * as for the commit command above.*/
+     * as for the commit command above.
+     * Commits are looked up in the message index (see MessageIndex).*/
 
     public static void findCommand(String mssgIn) {
-        boolean foundACommit = false;
-        List<String> eachCommitInDirectory =
-                Utils.plainFilenamesIn(COMMITS_FOLDER);
-
-        for (String currID : eachCommitInDirectory) {
-            Commit currentFromID =
-                    Commit.getCommitFromFile(currID);
-            String currMssg = currentFromID.getMssg();
-
-            if (mssgIn.equals(currMssg)) {
-                foundACommit = true;
-                System.out.println(currentFromID.getID());
-            }
+        List<String> found = MessageIndex.find(mssgIn);
+        for (String currID : found) {
+            System.out.println(currID);
+        }
+        if (found.isEmpty()) {
+            System.out.println("Found no "
+                    + "commit with that message.");
+            Main.exit();
+        }
+    }
+
+    /** Prints out the ids of all commits whose message matches QUERY,
+     * best match first (see SearchIndex). QUERY is words to find
+     * together, alternatives separated by OR, and a word ending in *
+     * matches every word it starts.
+     * @param query is the search query.*/
+    public static void searchCommand(String query) {
+        SearchIndex index = SearchIndex.load();
+        int[] found = index.search(query);
+        for (int doc : found) {
+            System.out.println(index.id(doc));
         }
-        if (!foundACommit) {
+        if (found.length == 0) {
             System.out.println("Found no "
                     + "commit with that message.");
-            System.exit(0);
         }
     }
 
@@ -414,18 +457,10 @@ public class RepoFace implements Serializable {
         Collections.sort(allBranchFileNames);
         for (String branchName
                 : allBranchFileNames) {
-            File pathToBranch =
-                    Utils.join(BRANCHES_FOLDER,
-                            branchName);
-            Branches actualBranchObject =
-                    Utils.readObject(pathToBranch,
-                            Branches.class);
-            String actualBranchName =
-                    actualBranchObject.getBranchName();
-            if (actualBranchName.equals(currBranchName)) {
-                System.out.println("*" + actualBranchName);
+            if (branchName.equals(currBranchName)) {
+                System.out.println("*" + branchName);
             } else {
-                System.out.println(actualBranchName);
+                System.out.println(branchName);
             }
         }
         System.out.println();
@@ -474,12 +509,12 @@ public class RepoFace implements Serializable {
      * The new version of the file is not staged.*/
     public static void checkoutCommandFILENAME(String nameFile) {
         Commit currHeadCommit = readHeadFile();
-        TreeMap<String, String> currHeadSnapshot =
+        Snapshot currHeadSnapshot =
                 currHeadCommit.getSnapshot();
         if (!currHeadSnapshot.containsKey(nameFile)) {
             System.out.println("File does not exist"
                     + " in that commit.");
-            System.exit(0);
+            Main.exit();
         } else {
             File checkIfExistsInCWD =
                     Utils.join(CWD.getPath(), nameFile);
@@ -489,15 +524,9 @@ public class RepoFace implements Serializable {
             }
             String blobIDFromSnap =
                     currHeadSnapshot.get(nameFile);
-            File blobLocation =
-                    Blob.searchBlobFile(blobIDFromSnap);
-            Blob readBlobFromLocation =
-                    Blob.readBlobFromFile(blobLocation);
-            byte[] rawContent =
-                    readBlobFromLocation.getBlobContent();
             File overWrittenNew =
                     Utils.join(CWD.getPath(), nameFile);
-            Utils.writeContents(overWrittenNew, rawContent);
+            Blob.writeBlobTo(blobIDFromSnap, overWrittenNew);
         }
     }
 
@@ -507,78 +536,54 @@ public class RepoFace implements Serializable {
      * the version of the file
      * that's already there if there is one.
      * The new version of the file is not staged.
+     * The id may be abbreviated (see Commit.resolveID).
      * @param userCommitHashID is given ID from user.
      * @param fileName is given name of file.*/
     public static void checkoutCommandCOMMITID(String fileName,
                                                String userCommitHashID) {
-        List<String> commitCandidate =
-                Utils.plainFilenamesIn(COMMITS_FOLDER);
-        boolean matchingCommitFound = false;
-
-        for (String candidateID : commitCandidate) {
-            if (candidateID.startsWith(userCommitHashID)) {
-                matchingCommitFound = true;
-                Commit matchedCommit =
-                        Commit.getCommitFromFile(candidateID);
-                TreeMap<String, String> matchedCommitSnap =
-                        matchedCommit.getSnapshot();
-                if (!matchedCommitSnap.containsKey(fileName)) {
-                    System.out.println("File does not "
-                            + "exist in that commit.");
-                    System.exit(0);
-                } else {
-                    File checkIfExistsInCWDagain =
-                            Utils.join(CWD.getPath(), fileName);
-                    if (checkIfExistsInCWDagain.exists()) {
-                        Utils.restrictedDelete(checkIfExistsInCWDagain);
-                    }
-                    String blobIDFromSnapy =
-                            matchedCommitSnap.get(fileName);
-                    File blobLocationy =
-                            Blob.searchBlobFile(blobIDFromSnapy);
-                    Blob readBlobFromLocationy =
-                            Blob.readBlobFromFile(blobLocationy);
-                    byte[] rawContenty =
-                            readBlobFromLocationy.getBlobContent();
-                    File overWrittenNewFile =
-                            Utils.join(CWD.getPath(), fileName);
-                    Utils.writeContents(overWrittenNewFile, rawContenty);
-                }
-            }
+        Commit matchedCommit =
+                Commit.getCommitFromFile(Commit.resolveID(userCommitHashID));
+        String blobIDFromSnapy = matchedCommit.trackedBlob(fileName);
+        if (blobIDFromSnapy == null) {
+            System.out.println("File does not "
+                    + "exist in that commit.");
+            Main.exit();
         }
-        if (!matchingCommitFound) {
-            System.out.println("No commit with "
-                    + "that id exists.");
-            System.exit(0);
+        File checkIfExistsInCWDagain =
+                Utils.join(CWD.getPath(), fileName);
+        if (checkIfExistsInCWDagain.exists()) {
+            Utils.restrictedDelete(checkIfExistsInCWDagain);
         }
+        Blob.writeBlobTo(blobIDFromSnapy, checkIfExistsInCWDagain);
     }
 
     /** Takes all files in the commit at the head of the branch
      * and puts them in the working directory, overwriting.
      * @param branchName is inputted branch name.*/
+    @SuppressWarnings("try")
     public static void checkoutCommandBRANCHNAME(String branchName) {
         File wantedBranch = Utils.join(BRANCHES_FOLDER, branchName);
         if (!wantedBranch.exists()) {
             System.out.println("No such branch exists.");
-            System.exit(0);
+            Main.exit();
         }
         String currentBranchToCompare =
                 Utils.readContentsAsString(currentBranchh);
         if (currentBranchToCompare.equals(branchName)) {
             System.out.println("No need to checkout "
                     + "the current branch.");
-            System.exit(0);
+            Main.exit();
         }
         Branches currentBranch = Branches.getBranchFromFile(
                                 currentBranchToCompare);
         Commit currentBranchCommit = currentBranch.getCurrCommit();
-        TreeMap<String, String> currentBranchSnapshot =
+        Snapshot currentBranchSnapshot =
                 currentBranchCommit.getSnapshot();
         Branches checkedOutBranch =
                 Branches.getBranchFromFile(branchName);
         Commit checkOutBranchCommit =
                 checkedOutBranch.getCurrCommit();
-        TreeMap<String, String> checkOutCommitSnap =
+        Snapshot checkOutCommitSnap =
                 checkOutBranchCommit.getSnapshot();
         List<File> fetchedCurrCWD = existingCWDFiles();
 
@@ -590,17 +595,19 @@ public class RepoFace implements Serializable {
                 checkFile.delete();
             }
         }
-        for (String fileOfCheckOutTreeMap : checkOutCommitSnap.keySet()) {
-            String hashOfFile = checkOutCommitSnap.get(fileOfCheckOutTreeMap);
-            File blobbyFound = Blob.searchBlobFile(hashOfFile);
-            Blob foundBlob = Blob.readBlobFromFile(blobbyFound);
-            Utils.writeContents(Utils.join(CWD, fileOfCheckOutTreeMap),
-                    foundBlob.getBlobContent());
+        try (Trace.Span span = Trace.span("write working files")) {
+            for (String fileOfCheckOutTreeMap : checkOutCommitSnap.keySet()) {
+                String hashOfFile =
+                        checkOutCommitSnap.get(fileOfCheckOutTreeMap);
+                File checkedOutFile = Utils.join(CWD, fileOfCheckOutTreeMap);
+                Blob.writeBlobTo(hashOfFile, checkedOutFile);
+                currIndex.written(checkedOutFile, hashOfFile);
+            }
         }
         Utils.writeContents(headd, checkOutBranchCommit.getID());
         Utils.writeContents(currentBranchh, branchName);
         currIndex.clear();
-        currIndex.saveIndex();
+        saveStage();
     }
 
     public static void isolationFunction(String branchName) {
@@ -609,38 +616,17 @@ public class RepoFace implements Serializable {
         Branches currentBranch = Branches.getBranchFromFile(
                 currentBranchToCompare);
         Commit currentBranchCommit = currentBranch.getCurrCommit();
-        TreeMap<String, String> currentBranchSnapshot =
+        Snapshot currentBranchSnapshot =
                 currentBranchCommit.getSnapshot();
         Branches checkedOutBranch =
                 Branches.getBranchFromFile(branchName);
         Commit checkOutBranchCommit =
                 checkedOutBranch.getCurrCommit();
-        TreeMap<String, String> checkOutCommitSnap =
+        Snapshot checkOutCommitSnap =
                 checkOutBranchCommit.getSnapshot();
-        List<String> stringCurrCWD = Utils.plainFilenamesIn(CWD);
-        for (String nameFile : stringCurrCWD) {
-            File currentFile = Utils.join(CWD, nameFile);
-            String currentFileName = currentFile.getName();
-            Blob genBlobby = new Blob(currentFile);
-            String genBlobbyID = genBlobby.blobID();
-            boolean fileInCheckout = checkOutCommitSnap.
-                    containsKey(currentFileName);
-            boolean fileInCurrent = currentBranchSnapshot.
-                    containsKey(currentFileName);
-            if (fileInCurrent && fileInCheckout) {
-                String checkOutHashID =
-                        checkOutCommitSnap.get(currentFileName);
-                String currentHashID =
-                        currentBranchSnapshot.get(currentFileName);
-                if (!genBlobbyID.equals(checkOutHashID)
-                        && !genBlobbyID.equals(currentHashID)) {
-                    untrackedError();
-                }
-            }
-            if (fileInCheckout && !fileInCurrent && !genBlobbyID.
-                    equals(checkOutCommitSnap.get(currentFileName))) {
-                untrackedError();
-            }
+        if (WorkingTree.scan(CWD, currIndex, currentBranchSnapshot)
+                .overwrites(checkOutCommitSnap)) {
+            untrackedError();
         }
     }
 
@@ -683,7 +669,7 @@ public class RepoFace implements Serializable {
         if (branchesInDirectory.contains(checky)) {
             System.out.println("A branch with that "
                     + "name already exists.");
-            System.exit(0);
+            Main.exit();
         }
     }
 
@@ -707,7 +693,7 @@ public class RepoFace implements Serializable {
         List<String> branchesDir = Utils.plainFilenamesIn(BRANCHES_FOLDER);
         if (!branchesDir.contains(checkThis)) {
             System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            Main.exit();
         }
     }
 
@@ -718,69 +704,40 @@ public class RepoFace implements Serializable {
                 Utils.readContentsAsString(currentBranchh);
         if (currentBranchName.equals(checkThis)) {
             System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            Main.exit();
         }
     }
 
-    /** Checks out all the files tracked by commit ID.
+    /** Checks out all the files tracked by commit ID, which may be
+     * abbreviated (see Commit.resolveID).
      * @param givenCommitID is given ID.*/
     public static void resetCommand(String givenCommitID) {
-        List<String> commitCandidates =
-                Utils.plainFilenamesIn(COMMITS_FOLDER);
-        boolean matchingCommitFound = false;
-        for (String checkCommitID : commitCandidates) {
-            if (checkCommitID.startsWith(givenCommitID)) {
-                matchingCommitFound = true;
-                Commit getActualCommit =
-                        Commit.getCommitFromFile(checkCommitID);
-                TreeMap<String, String> trackedOfID =
-                        getActualCommit.getSnapshot();
-                TreeMap<String, String> headTracked =
-                        readHeadFile().getSnapshot();
-                for (String nameFile : Utils.plainFilenamesIn(CWD)) {
-                    File currentFile = Utils.join(CWD, nameFile);
-                    String currentFileName = currentFile.getName();
-                    Blob genBlobby = new Blob(currentFile);
-                    String genBlobbyID = genBlobby.blobID();
-                    boolean fileInCheckout = trackedOfID.
-                            containsKey(currentFileName);
-                    boolean fileInCurrent = headTracked.
-                            containsKey(currentFileName);
-                    if (fileInCurrent && fileInCheckout) {
-                        String checkOutHashID =
-                                trackedOfID.get(currentFileName);
-                        String currentHashID =
-                                headTracked.get(currentFileName);
-                        if (!genBlobbyID.equals(checkOutHashID)
-                                && !genBlobbyID.equals(currentHashID)) {
-                            untrackedError();
-                        }
-                    }
-                    if (fileInCheckout && !fileInCurrent
-                            && !genBlobbyID.equals(trackedOfID.
-                            get(currentFileName))) {
-                        untrackedError();
-                    }
-                }
-                for (File checkFile : existingCWDFiles()) {
-                    if (headTracked.containsKey(checkFile.getName())
-                            && !trackedOfID.
-                            containsKey(checkFile.getName())) {
-                        checkFile.delete();
-                    }
-                }
-                for (String fileOfCheckOutTreeMap : trackedOfID.keySet()) {
-                    String hashOfFile = trackedOfID.
-                            get(fileOfCheckOutTreeMap);
-                    File blobbyFound = Blob.searchBlobFile(hashOfFile);
-                    Blob foundBlob = Blob.readBlobFromFile(blobbyFound);
-                    Utils.writeContents(Utils.join(CWD, fileOfCheckOutTreeMap),
-                            foundBlob.getBlobContent());
-                }
-                resetShenanigans(checkCommitID);
+        String checkCommitID = Commit.resolveID(givenCommitID);
+        Commit getActualCommit =
+                Commit.getCommitFromFile(checkCommitID);
+        Snapshot trackedOfID =
+                getActualCommit.getSnapshot();
+        Snapshot headTracked =
+                readHeadFile().getSnapshot();
+        if (WorkingTree.scan(CWD, currIndex, headTracked)
+                .overwrites(trackedOfID)) {
+            untrackedError();
+        }
+        for (File checkFile : existingCWDFiles()) {
+            if (headTracked.containsKey(checkFile.getName())
+                    && !trackedOfID.
+                    containsKey(checkFile.getName())) {
+                checkFile.delete();
             }
         }
-        noCommitIDError(matchingCommitFound);
+        for (String fileOfCheckOutTreeMap : trackedOfID.keySet()) {
+            String hashOfFile = trackedOfID.
+                    get(fileOfCheckOutTreeMap);
+            File resetFile = Utils.join(CWD, fileOfCheckOutTreeMap);
+            Blob.writeBlobTo(hashOfFile, resetFile);
+            currIndex.written(resetFile, hashOfFile);
+        }
+        resetShenanigans(checkCommitID);
     }
 
     /** Helper function for reset, taking care of saving.
@@ -789,23 +746,13 @@ public class RepoFace implements Serializable {
     public static void resetShenanigans(String checkCommitID) {
         Utils.writeContents(headd, checkCommitID);
         String currBranchName = readFileGetBranch();
-        File branchNode = Utils.join(BRANCHES_FOLDER, currBranchName);
         Commit getActualCommit =
                 Commit.getCommitFromFile(checkCommitID);
         Branches newWithCommit =
                 new Branches(getActualCommit, currBranchName);
-        Utils.writeObject(branchNode, newWithCommit);
+        newWithCommit.saveBranch();
         currIndex.clear();
-        currIndex.saveIndex();
-    }
-
-    /** Separate function for error printing.
-     * @param truth will determine if error is present. */
-    public static void noCommitIDError(boolean truth) {
-        if (!truth) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
-        }
+        saveStage();
     }
 
     /** Untracked error function called if untrack detected.*/
@@ -813,128 +760,106 @@ public class RepoFace implements Serializable {
         System.out.println("There is an untracked file "
                 + "in the way;" + " delete it, or add and "
                 + "commit it first.");
-        System.exit(0);
+        Main.exit();
     }
 
     /** Merges files from the given branch into the current branch.
      * Perform split point checks.
      * If surpassing errors and checks the function.
      * @param branchName is inputted name.*/
+    @SuppressWarnings("try")
     public static void mergeCommand(String branchName) {
         checkIfAnyStagedAdditionsOrRemovals();
         checkIfBranchDoesNotExist(branchName);
         checkIfTryingToMergeWithSelf(branchName);
         File pathToOtherBranch = Utils.join(BRANCHES_FOLDER,
                 branchName);
-        Branches otherBranchObject = Utils.readObject(pathToOtherBranch,
-                Branches.class);
+        Branches otherBranchObject = Branches.readBranchFile(pathToOtherBranch);
         Commit otherBranchCommit = otherBranchObject.getCurrCommit();
         Commit currBranchCommit = readHeadFile();
-        List<String> stringCurrCWD = Utils.plainFilenamesIn(CWD);
-        for (String nameFile : stringCurrCWD) {
-            File currentFile = Utils.join(CWD, nameFile);
-            String currentFileName = currentFile.getName();
-            Blob genBlobby = new Blob(currentFile);
-            String genBlobbyID = genBlobby.blobID();
-            boolean fileInCheckout = otherBranchCommit.
-                    getSnapshot().containsKey(currentFileName);
-            boolean fileInCurrent = currBranchCommit.
-                    getSnapshot().containsKey(currentFileName);
-            if (fileInCurrent && fileInCheckout) {
-                String checkOutHashID = otherBranchCommit.
-                        getSnapshot().get(currentFileName);
-                String currentHashID = currBranchCommit.
-                        getSnapshot().get(currentFileName);
-                if (!genBlobbyID.equals(checkOutHashID)
-                        && !genBlobbyID.equals(currentHashID)) {
-                    System.out.println("There is an untracked file in "
-                            + "the way; delete it, "
-                            + "or add and commit it first.");
-                    System.exit(0);
-                }
+        if (WorkingTree.scan(CWD, currIndex,
+                currBranchCommit.getSnapshot())
+                .overwrites(otherBranchCommit.getSnapshot())) {
+            untrackedError();
+        }
+        Commit splitPoint;
+        try (Trace.Span span = Trace.span("split point")) {
+            Bitmaps bitmaps = Bitmaps.load(false);
+            if (bitmaps.isAncestor(otherBranchCommit.getID(),
+                    currBranchCommit.getID())) {
+                System.out.println("Given branch is "
+                        + "an ancestor of the current branch.");
+                Main.exit();
             }
-            if (fileInCheckout && !fileInCurrent
-                    && !genBlobbyID.equals(otherBranchCommit.
-                    getSnapshot().get(currentFileName))) {
-                System.out.println("There is an untracked file in the way; "
-                        + "delete it, or add and commit it first.");
-                System.exit(0);
+            if (bitmaps.isAncestor(currBranchCommit.getID(),
+                    otherBranchCommit.getID())) {
+                RepoFace.checkoutCommandBRANCHNAME(branchName);
+                System.out.println("Current branch fast-forwarded.");
+                Main.exit();
             }
-        }
-        minimizedDepth = 1000;
-        minimizingHash = "";
-        Commit splitPoint =
-                getSplitPoint(currBranchCommit,
-                otherBranchCommit);
-        if (splitPoint.getID().equals(otherBranchCommit.
-                getID())) {
-            System.out.println("Given branch is "
-                    + "an ancestor of the current branch.");
-            System.exit(0);
-        }
-        if (splitPoint.equals(currBranchCommit)) {
-            RepoFace.checkoutCommandBRANCHNAME(branchName);
-            System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
+            splitPoint = getSplitPoint(currBranchCommit, otherBranchCommit);
         }
         mergeHelper1(branchName, splitPoint);
     }
 
+    @SuppressWarnings("try")
     public static void isolaterOne(Commit givenBranchCommit,
                                    Commit currBranchCommit,
-                                   TreeMap<String, String>
-                                           splitTreeMap,
-                                   TreeMap<String, String>
-                                           modifyME,
+                                   Snapshot splitTreeMap,
+                                   Snapshot modifyME,
                                    boolean conflictExists,
                                    String givenBranchName,
                                    Commit splitPT) {
 
-        for (String givenFile : givenBranchCommit.
-                getSnapshot().keySet()) {
-            if (currBranchCommit.
-                    getSnapshot().containsKey(givenFile)) {
-                String givenHash = givenBranchCommit.
-                                getSnapshot().get(givenFile);
-                String currentHash = currBranchCommit.
-                                getSnapshot().get(givenFile);
-                if (!givenHash.equals(currentHash) && !currentHash.
-                        equals(splitTreeMap.get(givenFile)) && !givenHash.
-                        equals(splitTreeMap.get(givenFile))) {
-                    modifyME = wC(givenFile, sR2(currentHash),
-                            sR1(givenHash));
-                    conflictExists = true;
-                }
-            }
-            if (!currBranchCommit.getSnapshot().containsKey(givenFile)) {
-                if (splitTreeMap.containsKey(givenFile)) {
-                    if (!splitTreeMap.get(givenFile).equals(
-                            givenBranchCommit.getSnapshot().get(givenFile))) {
-                        String hashOfGiven =
-                                givenBranchCommit.getSnapshot().get(givenFile);
-                        Blob givenBlob =
-                                takeHashAndFindBlobObject(hashOfGiven);
-                        byte[] contentsOfGivenBlob = givenBlob.getBlobContent();
-                        String deserializedGiven =
-                                new String(contentsOfGivenBlob,
-                                        StandardCharsets.UTF_8);
-                        modifyME = wC(givenFile, "", deserializedGiven);
+        try (Trace.Span span = Trace.span("conflicts in given files")) {
+            for (String givenFile : givenBranchCommit.
+                    getSnapshot().keySet()) {
+                if (currBranchCommit.
+                        getSnapshot().containsKey(givenFile)) {
+                    String givenHash = givenBranchCommit.
+                                    getSnapshot().get(givenFile);
+                    String currentHash = currBranchCommit.
+                                    getSnapshot().get(givenFile);
+                    if (!givenHash.equals(currentHash) && !currentHash.
+                            equals(splitTreeMap.get(givenFile)) && !givenHash.
+                            equals(splitTreeMap.get(givenFile))) {
+                        modifyME = wC(givenFile, sR2(currentHash),
+                                sR1(givenHash));
                         conflictExists = true;
                     }
                 }
-            }
-            if (!splitTreeMap.containsKey(givenFile)) {
-                if (givenBranchCommit.getSnapshot().containsKey(givenFile)
-                        && currBranchCommit.
-                        getSnapshot().containsKey(givenFile)) {
-                    String giventHash =
-                            givenBranchCommit.getSnapshot().get(givenFile);
-                    String currtHash =
-                            currBranchCommit.getSnapshot().get(givenFile);
-                    if (!giventHash.equals(currtHash)) {
-                        modifyME = wC(givenFile, sR2(currtHash),
-                                sR1(giventHash));
-                        conflictExists = true;
+                if (!currBranchCommit.getSnapshot().containsKey(givenFile)) {
+                    if (splitTreeMap.containsKey(givenFile)) {
+                        if (!splitTreeMap.get(givenFile).equals(
+                                givenBranchCommit.getSnapshot()
+                                        .get(givenFile))) {
+                            String hashOfGiven = givenBranchCommit
+                                    .getSnapshot().get(givenFile);
+                            Blob givenBlob =
+                                    takeHashAndFindBlobObject(hashOfGiven);
+                            byte[] contentsOfGivenBlob =
+                                    givenBlob.getBlobContent();
+                            String deserializedGiven =
+                                    new String(contentsOfGivenBlob,
+                                            StandardCharsets.UTF_8);
+                            modifyME = wC(givenFile, "", deserializedGiven);
+                            conflictExists = true;
+                        }
+                    }
+                }
+                if (!splitTreeMap.containsKey(givenFile)) {
+                    if (givenBranchCommit.getSnapshot().containsKey(givenFile)
+                            && currBranchCommit.
+                            getSnapshot().containsKey(givenFile)) {
+                        String giventHash =
+                                givenBranchCommit.getSnapshot().get(givenFile);
+                        String currtHash =
+                                currBranchCommit.getSnapshot().get(givenFile);
+                        if (!giventHash.equals(currtHash)) {
+                            modifyME = wC(givenFile, sR2(currtHash),
+                                    sR1(giventHash));
+                            conflictExists = true;
+                        }
                     }
                 }
             }
@@ -945,33 +870,34 @@ public class RepoFace implements Serializable {
     /** Function for merge after error checking.
      * @param givenBranchName is inputted branch.
      * @param splitPT is the split point found.*/
+    @SuppressWarnings("try")
     public static void mergeHelper1(String givenBranchName,
                                     Commit splitPT) {
         File pathToOtherBranch = Utils.join(BRANCHES_FOLDER,
                         givenBranchName);
         Branches otherBranchObject =
-                Utils.readObject(pathToOtherBranch,
-                        Branches.class);
+                Branches.readBranchFile(pathToOtherBranch);
 
         Commit givenBranchCommit =
                 otherBranchObject.getCurrCommit();
         Commit currBranchCommit = readHeadFile();
-        TreeMap<String, String> splitTreeMap =
+        Snapshot splitTreeMap =
                 splitPT.getSnapshot();
 
         Commit currHead = readHeadFile();
-        TreeMap<String, String> modifyME =
-                currHead.getSnapshot();
+        Snapshot modifyME = currHead.getSnapshot();
         boolean conflictExists = false;
 
-        mergeHelper2(givenBranchName, splitPT);
+        try (Trace.Span span = Trace.span("apply given branch")) {
+            mergeHelper2(givenBranchName, splitPT);
+        }
 
         isolaterOne(givenBranchCommit, currBranchCommit,
                         splitTreeMap, modifyME, conflictExists,
                 givenBranchName, splitPT);
     }
 
-    public static void contOfMergeHelper1(TreeMap<String, String> modifyME,
+    public static void contOfMergeHelper1(Snapshot modifyME,
                                           String givenBranchName,
                                           boolean conflictExists,
                                           Commit sPT) {
@@ -979,23 +905,31 @@ public class RepoFace implements Serializable {
         File pathToOtherBranch = Utils.join(BRANCHES_FOLDER,
                 givenBranchName);
         Branches otherBranchObject =
-                Utils.readObject(pathToOtherBranch, Branches.class);
+                Branches.readBranchFile(pathToOtherBranch);
         Commit givenBranchCommit =
                 otherBranchObject.getCurrCommit();
         moreHelp(conflictExists, currBranchCommit,
                 givenBranchCommit, sPT, modifyME, givenBranchName);
     }
 
+    @SuppressWarnings("try")
     public static String sR1(String givenHash) {
-        Blob givenBlob = takeHashAndFindBlobObject(givenHash);
+        Blob givenBlob;
+        try (Trace.Span span = Trace.span("read blob")) {
+            givenBlob = takeHashAndFindBlobObject(givenHash);
+        }
         byte[] contentsOfGivenBlob = givenBlob.getBlobContent();
         String deserializedGiven = new String(contentsOfGivenBlob,
                 StandardCharsets.UTF_8);
         return deserializedGiven;
     }
 
+    @SuppressWarnings("try")
     public static String sR2(String currentHash) {
-        Blob currentBlob = takeHashAndFindBlobObject(currentHash);
+        Blob currentBlob;
+        try (Trace.Span span = Trace.span("read blob")) {
+            currentBlob = takeHashAndFindBlobObject(currentHash);
+        }
         byte[] contentsOfCurrentBlob = currentBlob.getBlobContent();
         String deserializedCurrent =
                 new String(contentsOfCurrentBlob,
@@ -1003,72 +937,80 @@ public class RepoFace implements Serializable {
         return deserializedCurrent;
     }
 
+    @SuppressWarnings("try")
     public static void moreHelp(boolean conflictExists, Commit currBranchCommit,
                                 Commit givenBranchCommit, Commit sPT,
-                                TreeMap<String, String> modifyME,
+                                Snapshot modifyME,
                                 String givenBranchName) {
-        for (String currentFile : currBranchCommit.getSnapshot().keySet()) {
-            if (givenBranchCommit.getSnapshot().containsKey(currentFile)) {
-                String givenHash =
-                        givenBranchCommit.getSnapshot().get(currentFile);
-                String currentHash =
-                        currBranchCommit.getSnapshot().get(currentFile);
-                if (!givenHash.equals(currentHash) && !currentHash.equals(sPT.
-                        getSnapshot().get(currentFile))
-                        && !givenHash.equals(sPT.
-                        getSnapshot().get(currentFile))) {
-                    modifyME = wC(currentFile, sR2(currentHash),
-                            sR1(givenHash));
-                    conflictExists = true;
-                }
-            }
-            if (!givenBranchCommit.getSnapshot().containsKey(currentFile)) {
-                if (sPT.getSnapshot().containsKey(currentFile)) {
-                    if (!sPT.getSnapshot().get(currentFile).equals(
-                            currBranchCommit.getSnapshot().get(currentFile))) {
-                        String hashOfCurrent =
-                                currBranchCommit.getSnapshot().get(currentFile);
-                        Blob givenBlob =
-                                takeHashAndFindBlobObject(hashOfCurrent);
-                        byte[] contentsOfGivenBlob = givenBlob.getBlobContent();
-                        String deserializedGiven =
-                                new String(contentsOfGivenBlob,
-                                        StandardCharsets.UTF_8);
-                        modifyME = wC(currentFile, deserializedGiven, "");
-                        conflictExists = true;
-                    }
-                }
-            }
-            if (!sPT.getSnapshot().containsKey(currentFile)) {
-                TreeMap<String, String> gTM = givenBranchCommit.getSnapshot();
-                if (gTM.containsKey(currentFile)) {
-                    String giventHash =
+        try (Trace.Span span = Trace.span("conflicts in current files")) {
+            for (String currentFile : currBranchCommit.getSnapshot().keySet()) {
+                if (givenBranchCommit.getSnapshot().containsKey(currentFile)) {
+                    String givenHash =
                             givenBranchCommit.getSnapshot().get(currentFile);
-                    String currtHash =
+                    String currentHash =
                             currBranchCommit.getSnapshot().get(currentFile);
-                    if (!giventHash.equals(currtHash)) {
-                        String deserializedGivenn = sR1(giventHash);
-                        String deserializedCurrentt = sR2(currtHash);
-                        modifyME = wC(currentFile,
-                                deserializedCurrentt, deserializedGivenn);
+                    if (!givenHash.equals(currentHash)
+                            && !currentHash.equals(sPT.
+                            getSnapshot().get(currentFile))
+                            && !givenHash.equals(sPT.
+                            getSnapshot().get(currentFile))) {
+                        modifyME = wC(currentFile, sR2(currentHash),
+                                sR1(givenHash));
                         conflictExists = true;
                     }
                 }
+                if (!givenBranchCommit.getSnapshot().containsKey(currentFile)) {
+                    if (sPT.getSnapshot().containsKey(currentFile)) {
+                        if (!sPT.getSnapshot().get(currentFile).equals(
+                                currBranchCommit.getSnapshot()
+                                        .get(currentFile))) {
+                            String hashOfCurrent = currBranchCommit
+                                    .getSnapshot().get(currentFile);
+                            Blob givenBlob =
+                                    takeHashAndFindBlobObject(hashOfCurrent);
+                            byte[] contentsOfGivenBlob =
+                                    givenBlob.getBlobContent();
+                            String deserializedGiven =
+                                    new String(contentsOfGivenBlob,
+                                            StandardCharsets.UTF_8);
+                            modifyME = wC(currentFile, deserializedGiven, "");
+                            conflictExists = true;
+                        }
+                    }
+                }
+                if (!sPT.getSnapshot().containsKey(currentFile)) {
+                    Snapshot gTM = givenBranchCommit.getSnapshot();
+                    if (gTM.containsKey(currentFile)) {
+                        String giventHash = givenBranchCommit
+                                .getSnapshot().get(currentFile);
+                        String currtHash =
+                                currBranchCommit.getSnapshot().get(currentFile);
+                        if (!giventHash.equals(currtHash)) {
+                            String deserializedGivenn = sR1(giventHash);
+                            String deserializedCurrentt = sR2(currtHash);
+                            modifyME = wC(currentFile,
+                                    deserializedCurrentt, deserializedGivenn);
+                            conflictExists = true;
+                        }
+                    }
+                }
             }
         }
-        mergeHelper3(conflictExists,
-                givenBranchName, givenBranchCommit, modifyME);
+        try (Trace.Span span = Trace.span("merge commit")) {
+            mergeHelper3(conflictExists,
+                    givenBranchName, givenBranchCommit, modifyME);
+        }
     }
 
     /** Helper function for merge after all error checking.
      * @param conflictExists is boolean.
      * @param givenBranchCommit is commit.
      * @param givenBranchName is name string.
-     * @param modifyME is treemap.*/
+     * @param modifyME is snapshot of the merge commit.*/
     public static void mergeHelper3(boolean conflictExists,
                                     String givenBranchName,
                                     Commit givenBranchCommit,
-                                    TreeMap<String, String> modifyME) {
+                                    Snapshot modifyME) {
         String currentBranchName = Utils.readContentsAsString(currentBranchh);
         RepoFace.subCommitForm("Merged " + givenBranchName
                         + " into " + currentBranchName + ".",
@@ -1086,12 +1028,11 @@ public class RepoFace implements Serializable {
                                     Commit splitPT) {
         File pathToOtherBranch = Utils.join(BRANCHES_FOLDER,
                         givenBranchName);
-        Branches otherBranchObject = Utils.readObject(pathToOtherBranch,
-                        Branches.class);
+        Branches otherBranchObject = Branches.readBranchFile(pathToOtherBranch);
         Commit givenBranchCommit = otherBranchObject.
                 getCurrCommit();
         Commit currBranchCommit = readHeadFile();
-        TreeMap<String, String> splitTreeMap =
+        Snapshot splitTreeMap =
                 splitPT.getSnapshot();
         for (String givenIterFiles : givenBranchCommit.
                 getSnapshot().keySet()) {
@@ -1146,8 +1087,8 @@ public class RepoFace implements Serializable {
      * @param fN is file name as string.
      * @param cC is contents of curr branch.
      * @param cG is contents of inputted branch
-     * @return will be modified tree map for new commit.*/
-    public static TreeMap<String, String> wC(String fN, String cC, String cG) {
+     * @return will be modified snapshot for new commit.*/
+    public static Snapshot wC(String fN, String cC, String cG) {
 
         String writeThisIn = "<<<<<<< HEAD\n" + cC
                 + "=======\n" + cG + ">>>>>>>\n";
@@ -1155,48 +1096,33 @@ public class RepoFace implements Serializable {
         File pathwayToFile = Utils.join(CWD, fN);
         Utils.writeContents(pathwayToFile, writeThisIn);
         Commit prevHead = readHeadFile();
-        TreeMap<String, String> prevCommitTreeToModify = prevHead.getSnapshot();
         String shaOneUsingString = Utils.sha1(writeThisIn);
-        prevCommitTreeToModify.remove(fN);
-        prevCommitTreeToModify.put(fN, shaOneUsingString);
 
-        return prevCommitTreeToModify;
+        return prevHead.getSnapshot().edit().put(fN, shaOneUsingString)
+                .build();
     }
 
     /** Function which commits but has two parents.
      * @param message is message.
      * @param secondAncestor is hash of 2nd parent.
-     * @param prevMap is previous commit tree map.*/
+     * @param prevMap is previous commit snapshot.*/
     public static void subCommitForm(String message, String secondAncestor,
-                                     TreeMap<String, String> prevMap) {
+                                     Snapshot prevMap) {
         Commit prevHead =
                 readHeadFile();
         String prevID =
                 prevHead.getID();
         TreeMap<String, String> currAddedIndex =
                 currIndex.currAddedStage();
-        TreeMap<String, String> prevCommitSnapshot =
-                prevMap;
+        Snapshot.Builder newSnapshot = prevMap.edit();
 
         for (String fileName : currAddedIndex.keySet()) {
-
-            if (!prevCommitSnapshot.containsKey(fileName)) {
-                String addedHashVer = currAddedIndex.get(fileName);
-                prevCommitSnapshot.put(fileName, addedHashVer);
-
-            } else {
-                String addedHash = currAddedIndex.get(fileName);
-                String prevHash = prevCommitSnapshot.get(fileName);
-                if (!addedHash.equals(prevHash)) {
-                    prevCommitSnapshot.remove(fileName);
-                    prevCommitSnapshot.put(fileName, addedHash);
-                }
-            }
+            newSnapshot.put(fileName, currAddedIndex.get(fileName));
         }
         currIndex.clear();
-        currIndex.saveIndex();
+        saveStage();
         Commit newCommit = new Commit(message,
-                prevMap, secondAncestor, prevID);
+                newSnapshot.build(), secondAncestor, prevID);
         String newCommitID = newCommit.getID();
         writeInHashIntoNewFile(newCommitID, headd);
         String currBranchyName = readFileGetBranch();
@@ -1208,101 +1134,24 @@ public class RepoFace implements Serializable {
     }
 
 
+    /** Return the split point of CURRBRANCHCOMMIT and
+     * PASSEDBRANCHCOMMIT: their best common ancestor. When criss-cross
+     * merges leave several, the one of newest generation is used.
+     * @return is the split point commit.*/
     public static Commit getSplitPoint(Commit currBranchCommit,
                                        Commit passedBranchCommit) {
-        if (passedBranchCommit.getParentLink().equals(
-                currBranchCommit.getID())) {
-            return currBranchCommit;
-        }
-
-        String givenCommitID = passedBranchCommit.getID();
-
-        if (currBranchCommit.getSecondParent().equals("")) {
-            fromCurrentDepthMaker(1,
-                    currBranchCommit.getParentLink());
-        } else {
-            fromCurrentDepthMaker(1,
-                    currBranchCommit.getParentLink());
-            fromCurrentDepthMaker(1,
-                    currBranchCommit.getSecondParent());
-        }
-        givenAndDepthSearcher(givenCommitID);
-        File findMinFromStaticHash =
-                Utils.join(COMMITS_FOLDER, minimizingHash);
-
-        return Utils.readObject(findMinFromStaticHash,
-                Commit.class);
-    }
-
-
-    /** Function which goes down it's links and looks at the
-     * depths corresponding in the depthInCurrent tree.
-     * If the hash is the new minimum, update it and depth.
-     * THIS IS RECURSIVE.
-     * @param givenCommitID represents current Commit*/
-    public static void givenAndDepthSearcher(String givenCommitID) {
-        Commit actualObjectFromID = Commit.getCommitFromFile(givenCommitID);
-        if (actualObjectFromID.getParentLink() == null
-                && actualObjectFromID.getSecondParent().equals("")) {
-            if (depthInCurrent.containsKey(givenCommitID)) {
-                int checkDepth = depthInCurrent.get(givenCommitID);
-                if (checkDepth < minimizedDepth) {
-                    minimizedDepth = checkDepth;
-                    minimizingHash = givenCommitID;
-                }
-            }
-        } else {
-            if (depthInCurrent.containsKey(givenCommitID)) {
-                int checkDepthy = depthInCurrent.get(givenCommitID);
-                if (checkDepthy < minimizedDepth) {
-                    minimizedDepth = checkDepthy;
-                    minimizingHash = givenCommitID;
-                }
-            }
-            if (actualObjectFromID.getSecondParent().equals("")) {
-                givenAndDepthSearcher(actualObjectFromID.getParentLink());
-            } else {
-                givenAndDepthSearcher(actualObjectFromID.getParentLink());
-                givenAndDepthSearcher(actualObjectFromID.getSecondParent());
-            }
-        }
+        List<String> bases = MergeBase.bases(currBranchCommit.getID(),
+                passedBranchCommit.getID());
+        return Commit.getCommitFromFile(bases.get(0));
     }
 
-    /** Function which recursively goes from the head commit down to
-     * initial (aka no parents at all) For each commit hash,
-     * it puts in the DEPTH. Called with 0 and increments with each call.
-     * @param depth represents depth.
-     * @param currentOnID represents the current Commit ID.*/
-
-    public static void fromCurrentDepthMaker(int depth, String currentOnID) {
-        Commit actualCommitObject = Commit.getCommitFromFile(currentOnID);
-        if (actualCommitObject.getParentLink() == null
-                && actualCommitObject.getSecondParent().equals("")) {
-            depthInCurrent.put(currentOnID, depth);
-            return;
-        } else {
-            depthInCurrent.put(currentOnID, depth);
-            depth += 1;
-            if (actualCommitObject.getSecondParent().equals("")) {
-                fromCurrentDepthMaker(depth,
-                        actualCommitObject.getParentLink());
-            } else {
-                fromCurrentDepthMaker(depth,
-                        actualCommitObject.getParentLink());
-                fromCurrentDepthMaker(depth,
-                        actualCommitObject.getSecondParent());
-            }
-        }
-    }
-
-
     /** For merge: If there are staged additions or removals present,
      print the error message "You have uncommitted changes." and exit.*/
     public static void checkIfAnyStagedAdditionsOrRemovals() {
         boolean checkClean = currIndex.isClear();
         if (!checkClean) {
             System.out.println("You have uncommitted changes.");
-            System.exit(0);
+            Main.exit();
         }
     }
 
@@ -1311,13 +1160,12 @@ public class RepoFace implements Serializable {
     public static void checkIfTryingToMergeWithSelf(String branchNameIn) {
         String currentBranchName = readFileGetBranch();
         File currBranchPath = Utils.join(BRANCHES_FOLDER, currentBranchName);
-        Branches actualCurrObject = Utils.readObject(currBranchPath,
-                Branches.class);
+        Branches actualCurrObject = Branches.readBranchFile(currBranchPath);
         String nameOfCurrBranch = actualCurrObject.getBranchName();
 
         if (nameOfCurrBranch.equals(branchNameIn)) {
             System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
+            Main.exit();
         }
     }
 
@@ -1325,12 +1173,243 @@ public class RepoFace implements Serializable {
      * @param blobHash is hash.
      * @return is blob object from hash.*/
     public static Blob takeHashAndFindBlobObject(String blobHash) {
-        File formPath = Utils.join(BLOBS_FOLDER, blobHash);
-        Blob foundBlob = Utils.readObject(formPath, Blob.class);
+        Blob foundBlob = Blob.readBlob(blobHash);
         return foundBlob;
 
     }
 
+    /** Upgrades a repository written by an older gitlet to the
+     * current on disk formats. Serialized blobs and commits are
+     * rewritten as objects, objects kept flat in their folder are
+     * moved into shard subfolders and serialized branches are
+     * rewritten as bare commit IDs; anything already current is left
+     * alone. */
+    public static void migrateCommand() {
+        int migrated = migrateLooseObjects();
+        for (String branchName : Utils.plainFilenamesIn(BRANCHES_FOLDER)) {
+            if (Branches.migrateBranchFile(
+                    Utils.join(BRANCHES_FOLDER, branchName))) {
+                migrated += 1;
+            }
+        }
+        System.out.println("Migrated " + migrated + " objects.");
+    }
+
+    /** Rewrite every loose serialized blob and commit as an object, and
+     * move every loose object still flat in its folder into its shard.
+     * @return is the number of objects rewritten or moved.*/
+    private static int migrateLooseObjects() {
+        int migrated = 0;
+        for (File folder : new File[] {BLOBS_FOLDER, COMMITS_FOLDER,
+            Tree.TREES_FOLDER}) {
+            for (Map.Entry<String, File> loose
+                    : ObjectStore.looseObjects(folder).entrySet()) {
+                File location = loose.getValue();
+                boolean rewritten = folder == BLOBS_FOLDER
+                        ? Blob.migrateBlobFile(location)
+                        : folder == COMMITS_FOLDER
+                        && Commit.migrateCommitFile(location);
+                boolean moved = location.getParentFile().equals(folder);
+                if (moved) {
+                    File sharded = ObjectStore.shardFile(folder,
+                            loose.getKey());
+                    sharded.getParentFile().mkdir();
+                    ObjectStore.moveIntoPlace(location, sharded);
+                }
+                if (rewritten || moved) {
+                    migrated += 1;
+                }
+            }
+        }
+        return migrated;
+    }
+
+    /** Consolidates every loose blob and commit, together with all
+     * objects already packed, into as few packs as the pack size limit
+     * allows, then deletes the loose files and the old packs. Objects
+     * too big for a pack stay loose. */
+    public static void packCommand() {
+        List<File> looseFiles = new ArrayList<>();
+        TreeMap<String, PackFile.Entry> entries =
+                collectPackEntries(looseFiles);
+        writePacks(entries, looseFiles);
+        System.out.println("Packed " + entries.size() + " objects.");
+    }
+
+    /** Like pack, but stores older versions of each tracked file as
+     * deltas against a newer version (see DeltaPlan), keeping delta
+     * chains at most pack.deltaDepth long. A delta is only kept if it
+     * is under half the size of the version it replaces. */
+    public static void repackDeltasCommand() {
+        List<File> looseFiles = new ArrayList<>();
+        TreeMap<String, PackFile.Entry> entries =
+                collectPackEntries(looseFiles);
+        DeltaPlan plan = new DeltaPlan(Config.getInt(DeltaPlan.DEPTH_KEY,
+                DeltaPlan.DEFAULT_DEPTH));
+        for (String branchName : Utils.plainFilenamesIn(BRANCHES_FOLDER)) {
+            plan.addHistory(Branches.getBranchFromFile(branchName)
+                    .getCommitID());
+        }
+        plan.addHistory(Utils.readContentsAsString(headd));
+        int deltas = 0;
+        for (String blobID : plan.blobs()) {
+            String key = PackFile.key(blobID, ObjectStore.BLOB_TYPE);
+            if (!entries.containsKey(key)) {
+                continue;
+            }
+            byte[] content = Blob.readContent(blobID);
+            String baseID = plan.baseOf(blobID);
+            byte[] stored = null;
+            if (baseID != null && entries.containsKey(
+                    PackFile.key(baseID, ObjectStore.BLOB_TYPE))) {
+                byte[] delta = Delta.create(Blob.readContent(baseID),
+                        content);
+                if (delta.length < content.length / 2) {
+                    byte[] deltaContent = Arrays.copyOf(
+                            PackFile.fromHex(baseID),
+                            PackFile.ID_BYTES + delta.length);
+                    System.arraycopy(delta, 0, deltaContent,
+                            PackFile.ID_BYTES, delta.length);
+                    stored = ObjectStore.objectBytes(
+                            ObjectStore.DELTA_TYPE, deltaContent);
+                    deltas += 1;
+                }
+            }
+            if (stored == null && ObjectStore.typeOf(blobID, BLOBS_FOLDER,
+                    ObjectStore.BLOB_TYPES) == ObjectStore.DELTA_TYPE) {
+                stored = ObjectStore.objectBytes(ObjectStore.BLOB_TYPE,
+                        content);
+            }
+            if (stored != null) {
+                entries.put(key, new PackFile.Entry(blobID, null,
+                        ByteBuffer.wrap(stored)));
+            }
+        }
+        writePacks(entries, looseFiles);
+        System.out.println("Packed " + entries.size() + " objects, "
+                + deltas + " as deltas.");
+    }
+
+    /** Return an entry for every packed object and for every loose
+     * object small enough to pack, keyed and so sorted by ID and kind
+     * (see PackFile.key), as a tree and a blob may share an ID. Loose
+     * serialized objects are migrated first. The loose files used are
+     * added to LOOSEFILES.
+     * @return is the entries.*/
+    private static TreeMap<String, PackFile.Entry> collectPackEntries(
+            List<File> looseFiles) {
+        migrateLooseObjects();
+        TreeMap<String, PackFile.Entry> entries = new TreeMap<>();
+        for (PackFile pack : PackFile.packs()) {
+            for (int i = 0; i < pack.size(); i += 1) {
+                String packedID = pack.id(i);
+                entries.put(PackFile.key(packedID, pack.type(i)),
+                        new PackFile.Entry(packedID, null, pack.entry(i)));
+            }
+        }
+        File[] folders = {BLOBS_FOLDER, COMMITS_FOLDER, Tree.TREES_FOLDER};
+        byte[] kinds = {ObjectStore.BLOB_TYPE, ObjectStore.COMMIT_TYPE,
+            ObjectStore.TREE_TYPE};
+        for (int k = 0; k < folders.length; k += 1) {
+            for (Map.Entry<String, File> loose
+                    : ObjectStore.looseObjects(folders[k]).entrySet()) {
+                if (loose.getValue().length() <= PackFile.MAX_PACK_BYTES) {
+                    entries.put(PackFile.key(loose.getKey(), kinds[k]),
+                            new PackFile.Entry(loose.getKey(),
+                                    loose.getValue(), null));
+                    looseFiles.add(loose.getValue());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /** Write ENTRIES into new packs, then delete LOOSEFILES, with the
+     * shard subfolders they empty, and every pack that was there
+     * before. */
+    private static void writePacks(TreeMap<String, PackFile.Entry> entries,
+                                   List<File> looseFiles) {
+        List<String> oldPackFiles = Utils.plainFilenamesIn(
+                PackFile.PACKS_FOLDER);
+        List<String> written = new ArrayList<>();
+        List<PackFile.Entry> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+        for (PackFile.Entry entry : entries.values()) {
+            if (chunkBytes + entry.size() > PackFile.MAX_PACK_BYTES) {
+                written.add(PackFile.write(chunk));
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(entry);
+            chunkBytes += entry.size();
+        }
+        if (!chunk.isEmpty()) {
+            written.add(PackFile.write(chunk));
+        }
+        for (File loose : looseFiles) {
+            ObjectStore.deleteLoose(loose);
+        }
+        if (oldPackFiles != null) {
+            for (String oldName : oldPackFiles) {
+                String base = oldName.substring(0, oldName.indexOf('.'));
+                if (!written.contains(base)) {
+                    Utils.join(PackFile.PACKS_FOLDER, oldName).delete();
+                }
+            }
+        }
+        PackFile.reload();
+    }
+
+    /** Writes reachability bitmaps for every branch tip and for
+     * commits spaced through history (see Bitmaps), which speed up
+     * ancestry checks and object counting. */
+    public static void bitmapCommand() {
+        int written = Bitmaps.write();
+        System.out.println("Wrote bitmaps for " + written + " commits.");
+    }
+
+    /** Prints how many commits, and how many objects (tree nodes and
+     * blobs), are reachable from the branches. */
+    public static void countObjectsCommand() {
+        long[] counts = Bitmaps.countReachable();
+        System.out.println(counts[0] + " commits, " + counts[1]
+                + " objects reachable.");
+    }
+
+    /** Prints the value of setting KEY, or sets it to VALUE if one is
+     * given. Settings live in the config file of the repository. A
+     * codec or compression level objects could not be written with is
+     * refused, leaving the setting as it was.
+     * @param key is the setting name.
+     * @param value is the new value, or null to print.*/
+    public static void configCommand(String key, String value) {
+        if (value == null) {
+            System.out.println(Config.get(key, ""));
+            return;
+        }
+        if (key.equals(Config.CODEC)) {
+            try {
+                ObjectCodec.forName(value, -1);
+            } catch (IllegalArgumentException excp) {
+                System.out.println("No codec named " + value + ".");
+                Main.exit();
+            }
+        } else if (key.equals(Config.COMPRESSION_LEVEL)) {
+            int level;
+            try {
+                level = Integer.parseInt(value.trim());
+            } catch (NumberFormatException excp) {
+                level = -2;
+            }
+            if (level < -1 || level > 9) {
+                System.out.println("Compression level must be a number "
+                        + "from -1 to 9.");
+                Main.exit();
+            }
+        }
+        Config.set(key, value);
+    }
+
     /** Access function to return head file.
      * @return is file of head.*/
     public static File headdReturner() {
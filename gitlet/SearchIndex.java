@@ -0,0 +1,577 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Class holding a full-text index of commit messages: for each word
+ * (term) the commits whose message has it.
+ * Commits are numbered in the order they are indexed; the docs file
+ * holds the 20 byte ID of each. The postings file holds the terms in
+ * sorted order, each with the numbers of its commits stored as the
+ * varint encoded gaps between them, behind a table of entry offsets
+ * that is binary searched. New commits go to a small text tail file,
+ * one line per commit, which is folded into the postings file once it
+ * has TAIL_LIMIT lines, so saving a commit stays cheap.
+ * A query is terms to find together, optionally separated by OR into
+ * alternatives; a term ending in * matches every term it starts.
+ * Results are ranked by the number of alternatives matched, then
+ * newest first.
+ * The postings file is 4 magic bytes, an int count of commits covered,
+ * an int count of terms and their int offsets, then per term: a short
+ * length and the UTF-8 term, an int count of commits and an int length
+ * and the bytes of its encoded gaps.
+ * @author Katrina Sharonin.*/
+final class SearchIndex {
+
+    /** Search folder in gitlet folder.*/
+    static final File SEARCH_FOLDER =
+            Utils.join(RepoFace.GITLET_FOLDER, "search");
+
+    /** Magic bytes starting the postings file, last one is version. */
+    private static final byte[] MAGIC = {'G', 'L', 'S', 1};
+
+    /** Bytes in front of the offsets table. */
+    private static final int HEADER = MAGIC.length + 2 * Integer.BYTES;
+
+    /** Tail lines kept before folding them into the postings. */
+    static final int TAIL_LIMIT = 1024;
+
+    /** Longest term indexed; longer words are cut. */
+    private static final int MAX_TERM = 64;
+
+    /** Query word separating alternatives. */
+    private static final String OR = "OR";
+
+    /** File of commit IDs, by number. */
+    private final File _docs;
+
+    /** File of terms and their commits. */
+    private final File _postings;
+
+    /** File of commits not yet in the postings. */
+    private final File _tail;
+
+    /** Mapped postings file, loaded on first query. */
+    private MappedByteBuffer _map;
+
+    /** Mapped docs file, loaded on first use. */
+    private MappedByteBuffer _docsMap;
+
+    /** Index kept in FOLDER. */
+    SearchIndex(File folder) {
+        _docs = Utils.join(folder, "docs");
+        _postings = Utils.join(folder, "postings");
+        _tail = Utils.join(folder, "tail");
+    }
+
+    /** Add COMMIT, just saved, to the index of this repository, which
+     * is built from every commit first if there is none. */
+    static void add(Commit commit) {
+        SearchIndex index = new SearchIndex(SEARCH_FOLDER);
+        if (!index.consistent()) {
+            index.rebuildFromCommits();
+        } else {
+            index.append(commit.getID(), commit.getMssg());
+        }
+    }
+
+    /** Return the index of this repository, built from every commit if
+     * there is none or it is not consistent.
+     * @return is the index.*/
+    static SearchIndex load() {
+        SearchIndex index = new SearchIndex(SEARCH_FOLDER);
+        if (!index.consistent()) {
+            index.rebuildFromCommits();
+        }
+        return index;
+    }
+
+    /** Return true if the index files exist and the docs file lists
+     * one commit for each the postings cover and each tail line, as
+     * every append leaves it. An append cut short between its writes
+     * leaves them apart, which would shift commit numbers against
+     * their IDs.
+     * @return is boolean.*/
+    private boolean consistent() {
+        if (!_postings.exists() || !_docs.exists() || !_tail.exists()
+                || _docs.length() % PackFile.ID_BYTES != 0) {
+            return false;
+        }
+        MappedByteBuffer postings = mapPostings();
+        return postings.limit() >= HEADER
+                && docCount() == postings.getInt(MAGIC.length) + tailLines();
+    }
+
+    /** Index every commit of this repository afresh, oldest first. */
+    void rebuildFromCommits() {
+        List<Commit> commits = new ArrayList<>();
+        for (String id : Commit.allCommitIDs()) {
+            commits.add(Commit.getCommitFromFile(id));
+        }
+        commits.sort(Comparator.comparingLong(Commit::getTime));
+        List<String> ids = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        for (Commit commit : commits) {
+            ids.add(commit.getID());
+            messages.add(commit.getMssg());
+        }
+        rebuild(ids, messages);
+    }
+
+    /** Index the commits IDS, with MESSAGES, afresh. */
+    void rebuild(List<String> ids, List<String> messages) {
+        _docs.getParentFile().mkdirs();
+        ByteBuffer docs = ByteBuffer.allocate(ids.size() * PackFile.ID_BYTES);
+        TreeMap<String, DocList> terms = new TreeMap<>();
+        for (int doc = 0; doc < ids.size(); doc += 1) {
+            docs.put(PackFile.fromHex(ids.get(doc)));
+            for (String term : terms(messages.get(doc))) {
+                terms.computeIfAbsent(term, t -> new DocList()).add(doc);
+            }
+        }
+        writeAtomically(_docs, docs.array());
+        writePostings(ids.size(), terms, null);
+        writeAtomically(_tail, new byte[0]);
+        _map = null;
+        _docsMap = null;
+    }
+
+    /** Add the commit with ID and MESSAGE to the tail, folding the tail
+     * into the postings once it is full. The tail line is written before
+     * the ID, so an append cut short leaves the index inconsistent
+     * rather than numbering later commits wrongly. */
+    void append(String id, String message) {
+        int doc = docCount();
+        String line = doc + " " + String.join(" ", terms(message)) + "\n";
+        appendTo(_tail, line.getBytes(StandardCharsets.UTF_8));
+        appendTo(_docs, PackFile.fromHex(id));
+        _docsMap = null;
+        if (tailLines() >= TAIL_LIMIT) {
+            writePostings(doc + 1, readTail(), mapPostings());
+            writeAtomically(_tail, new byte[0]);
+            _map = null;
+        }
+    }
+
+    /** Return the numbers of the commits matching QUERY, best first.
+     * @return is the ranked commit numbers.*/
+    int[] search(String query) {
+        Map<String, DocList> tail = readTail();
+        List<int[]> alternatives = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals(OR)) {
+                alternatives.add(matchingAll(words, tail));
+                words = new ArrayList<>();
+            } else if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        alternatives.add(matchingAll(words, tail));
+        int[] all = new int[0];
+        int[] scores = new int[0];
+        for (int[] docs : alternatives) {
+            int[] merged = new int[all.length + docs.length];
+            int[] mergedScores = new int[merged.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < all.length || j < docs.length) {
+                if (j == docs.length || i < all.length && all[i] < docs[j]) {
+                    merged[n] = all[i];
+                    mergedScores[n] = scores[i];
+                    i += 1;
+                } else {
+                    boolean both = i < all.length && all[i] == docs[j];
+                    merged[n] = docs[j];
+                    mergedScores[n] = 1 + (both ? scores[i] : 0);
+                    i += both ? 1 : 0;
+                    j += 1;
+                }
+                n += 1;
+            }
+            all = Arrays.copyOf(merged, n);
+            scores = Arrays.copyOf(mergedScores, n);
+        }
+        int distinct = all.length;
+        int[] result = new int[distinct];
+        int n = 0;
+        for (int score = alternatives.size(); score > 0; score -= 1) {
+            for (int i = distinct - 1; i >= 0; i -= 1) {
+                if (scores[i] == score) {
+                    result[n] = all[i];
+                    n += 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the ID of commit number DOC.
+     * @return is the hex ID.*/
+    String id(int doc) {
+        if (_docsMap == null) {
+            _docsMap = map(_docs);
+        }
+        byte[] raw = new byte[PackFile.ID_BYTES];
+        _docsMap.get(doc * PackFile.ID_BYTES, raw);
+        return ObjectStore.toHex(raw);
+    }
+
+    /** Return the sorted numbers of the commits having all of the
+     * query WORDS, looking in the postings and in TAIL.
+     * @return is the commit numbers.*/
+    private int[] matchingAll(List<String> words,
+                              Map<String, DocList> tail) {
+        int[] docs = null;
+        for (String word : words) {
+            boolean prefix = word.endsWith("*");
+            List<String> parts = terms(prefix
+                    ? word.substring(0, word.length() - 1) : word);
+            for (int i = 0; i < parts.size(); i += 1) {
+                boolean last = i == parts.size() - 1;
+                int[] matched = matching(parts.get(i), prefix && last,
+                        tail);
+                docs = docs == null ? matched : intersect(docs, matched);
+            }
+        }
+        return docs == null ? new int[0] : docs;
+    }
+
+    /** Return the sorted numbers of the commits having TERM, or any
+     * term it starts if PREFIX, looking in the postings and in TAIL.
+     * @return is the commit numbers.*/
+    private int[] matching(String term, boolean prefix,
+                           Map<String, DocList> tail) {
+        List<int[]> parts = new ArrayList<>();
+        MappedByteBuffer map = mapPostings();
+        int count = map.getInt(MAGIC.length + Integer.BYTES);
+        for (int i = lowerBound(map, count, term); i < count; i += 1) {
+            int entry = map.getInt(HEADER + i * Integer.BYTES);
+            String found = termAt(map, entry);
+            if (!(prefix ? found.startsWith(term) : found.equals(term))) {
+                break;
+            }
+            parts.add(decode(map, entry));
+        }
+        for (Map.Entry<String, DocList> pending : tail.entrySet()) {
+            String found = pending.getKey();
+            if (prefix ? found.startsWith(term) : found.equals(term)) {
+                parts.add(pending.getValue().toArray());
+            }
+        }
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        BitSet docs = new BitSet();
+        for (int[] part : parts) {
+            for (int doc : part) {
+                docs.set(doc);
+            }
+        }
+        return docs.stream().toArray();
+    }
+
+    /** Return the first of the COUNT terms of MAP not below TERM.
+     * @return is the term number.*/
+    private static int lowerBound(MappedByteBuffer map, int count,
+                                  String term) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int entry = map.getInt(HEADER + mid * Integer.BYTES);
+            if (termAt(map, entry).compareTo(term) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Return the term of the entry at offset ENTRY of MAP.
+     * @return is the term.*/
+    private static String termAt(ByteBuffer map, int entry) {
+        byte[] bytes = new byte[map.getShort(entry)];
+        map.get(entry + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Return the commit numbers of the entry at offset ENTRY of MAP.
+     * @return is the sorted numbers.*/
+    private static int[] decode(ByteBuffer map, int entry) {
+        int at = entry + Short.BYTES + map.getShort(entry);
+        int[] result = new int[map.getInt(at)];
+        at += 2 * Integer.BYTES;
+        int doc = 0;
+        for (int i = 0; i < result.length; i += 1) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = map.get(at);
+                at += 1;
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            result[i] = doc;
+        }
+        return result;
+    }
+
+    /** Write a postings file covering DOCS commits with the commits of
+     * each of TERMS, added to those OLD has for it if OLD is not null.
+     * Terms only OLD has are copied without decoding them. */
+    private void writePostings(int docs, Map<String, DocList> terms,
+                               ByteBuffer old) {
+        TreeMap<String, Integer> oldEntries = new TreeMap<>();
+        if (old != null) {
+            int count = old.getInt(MAGIC.length + Integer.BYTES);
+            for (int i = 0; i < count; i += 1) {
+                int entry = old.getInt(HEADER + i * Integer.BYTES);
+                oldEntries.put(termAt(old, entry), entry);
+            }
+        }
+        TreeSet<String> all = new TreeSet<>(oldEntries.keySet());
+        all.addAll(terms.keySet());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int[] offsets = new int[all.size()];
+        int headerSize = HEADER + all.size() * Integer.BYTES;
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            int i = 0;
+            for (String term : all) {
+                offsets[i] = headerSize + out.size();
+                i += 1;
+                Integer oldEntry = oldEntries.get(term);
+                DocList added = terms.get(term);
+                if (added == null) {
+                    int length = Short.BYTES + old.getShort(oldEntry);
+                    length += 2 * Integer.BYTES
+                            + old.getInt(oldEntry + length + Integer.BYTES);
+                    byte[] raw = new byte[length];
+                    old.get(oldEntry, raw);
+                    out.write(raw);
+                    continue;
+                }
+                int[] docsOf = oldEntry == null ? new int[0]
+                        : decode(old, oldEntry);
+                int[] merged = Arrays.copyOf(docsOf,
+                        docsOf.length + added._size);
+                System.arraycopy(added._docs, 0, merged, docsOf.length,
+                        added._size);
+                byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+                byte[] gaps = encode(merged);
+                out.writeShort(termBytes.length);
+                out.write(termBytes);
+                out.writeInt(merged.length);
+                out.writeInt(gaps.length);
+                out.write(gaps);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ByteBuffer file = ByteBuffer.allocate(headerSize + body.size());
+        file.put(MAGIC).putInt(docs).putInt(offsets.length);
+        for (int offset : offsets) {
+            file.putInt(offset);
+        }
+        file.put(body.toByteArray());
+        writeAtomically(_postings, file.array());
+    }
+
+    /** Return DOCS, sorted, as varint encoded gaps.
+     * @return is the encoded bytes.*/
+    private static byte[] encode(int[] docs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int previous = 0;
+        for (int doc : docs) {
+            int gap = doc - previous;
+            previous = doc;
+            while ((gap & ~0x7F) != 0) {
+                out.write(gap & 0x7F | 0x80);
+                gap >>>= 7;
+            }
+            out.write(gap);
+        }
+        return out.toByteArray();
+    }
+
+    /** Return the words of TEXT to index or look up: runs of letters,
+     * digits, '_' and '-', lower cased, without leading or trailing
+     * '-', and cut to MAX_TERM characters.
+     * @return is the terms, in order.*/
+    static List<String> terms(String text) {
+        List<String> result = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i += 1) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            boolean inWord = Character.isLetterOrDigit(c) || c == '_'
+                    || c == '-';
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                int end = i;
+                while (start < end && lower.charAt(start) == '-') {
+                    start += 1;
+                }
+                while (end > start && lower.charAt(end - 1) == '-') {
+                    end -= 1;
+                }
+                if (start < end) {
+                    result.add(lower.substring(start,
+                            Math.min(end, start + MAX_TERM)));
+                }
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the tail as the commits of each term.
+     * @return is the sorted commit numbers by term.*/
+    private Map<String, DocList> readTail() {
+        TreeMap<String, DocList> result = new TreeMap<>();
+        if (!_tail.exists()) {
+            return result;
+        }
+        for (String line : Utils.readContentsAsString(_tail).split("\n")) {
+            String[] words = line.split(" ");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            int doc = Integer.parseInt(words[0]);
+            for (int i = 1; i < words.length; i += 1) {
+                result.computeIfAbsent(words[i], t -> new DocList())
+                        .add(doc);
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of lines in the tail.
+     * @return is the count.*/
+    private int tailLines() {
+        byte[] content = Utils.readContents(_tail);
+        int lines = 0;
+        for (byte b : content) {
+            lines += b == '\n' ? 1 : 0;
+        }
+        return lines;
+    }
+
+    /** Return the number of commits indexed.
+     * @return is the count.*/
+    private int docCount() {
+        return (int) (_docs.length() / PackFile.ID_BYTES);
+    }
+
+    /** Return the postings file, mapped read only.
+     * @return is the mapping.*/
+    private MappedByteBuffer mapPostings() {
+        if (_map == null) {
+            _map = map(_postings);
+        }
+        return _map;
+    }
+
+    /** Return FILE mapped read only.
+     * @return is the mapping.*/
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the sorted intersection of sorted A and B.
+     * @return is the intersection.*/
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i += 1;
+            } else if (b[j] < a[i]) {
+                j += 1;
+            } else {
+                result[n] = a[i];
+                n += 1;
+                i += 1;
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Add BYTES to the end of FILE. */
+    private static void appendTo(File file, byte[] bytes) {
+        try (FileChannel out = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Replace FILE with CONTENT through a temporary file. */
+    private static void writeAtomically(File file, byte[] content) {
+        File temp = new File(file.getPath() + ".tmp");
+        Utils.writeContents(temp, (Object) content);
+        ObjectStore.moveIntoPlace(temp, file);
+    }
+
+    /** Growing sorted list of commit numbers. */
+    private static final class DocList {
+
+        /** The numbers, in the first _size places. */
+        private int[] _docs = new int[2];
+
+        /** Number of numbers held. */
+        private int _size;
+
+        /** Add DOC, which is not below any number held; a repeat of
+         * the last is ignored. */
+        void add(int doc) {
+            if (_size > 0 && _docs[_size - 1] == doc) {
+                return;
+            }
+            if (_size == _docs.length) {
+                _docs = Arrays.copyOf(_docs, 2 * _size);
+            }
+            _docs[_size] = doc;
+            _size += 1;
+        }
+
+        /** Return the numbers held.
+         * @return is a new array.*/
+        int[] toArray() {
+            return Arrays.copyOf(_docs, _size);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Class holding the files a commit tracks, file name to blob ID, as
+ * a map that never changes. Names are kept sorted in one array and
+ * their blob IDs, as 20 binary bytes each, in a parallel byte array,
+ * so a lookup is a binary search and an entry costs a name reference
+ * and 20 bytes instead of a TreeMap node and a 40 character string.
+ * IDs are turned into hex only when asked for, by get or by iterating;
+ * a snapshot read from a tree never holds them as hex at all.
+ * Since a snapshot never changes it may be shared by commands and
+ * threads; the map functions that would change it throw
+ * UnsupportedOperationException.
+ * A changed snapshot is made by a Builder, which records the changes
+ * to its base and copies the base only once, when built.
+ * @author Katrina Sharonin.*/
+final class Snapshot extends AbstractMap<String, String> {
+
+    /** Bytes of a binary blob ID. */
+    private static final int ID = PackFile.ID_BYTES;
+
+    /** Snapshot tracking nothing. */
+    static final Snapshot EMPTY = new Snapshot(new String[0], new byte[0]);
+
+    /** Names tracked, sorted. */
+    private final String[] _names;
+
+    /** Binary blob ID of each name in _names, ID bytes each. */
+    private final byte[] _ids;
+
+    /** Snapshot tracking NAMES, which are sorted, with the binary blob
+     * IDs in IDS. */
+    private Snapshot(String[] names, byte[] ids) {
+        _names = names;
+        _ids = ids;
+    }
+
+    /** Return a snapshot holding the entries of MAP.
+     * @return is the snapshot, MAP itself if it is one.*/
+    static Snapshot of(Map<String, String> map) {
+        if (map instanceof Snapshot snapshot) {
+            return snapshot;
+        }
+        TreeMap<String, String> sorted = map instanceof TreeMap<String,
+                String> tree && tree.comparator() == null ? tree
+                : new TreeMap<>(map);
+        String[] names = new String[sorted.size()];
+        byte[] ids = new byte[sorted.size() * ID];
+        int i = 0;
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            names[i] = entry.getKey();
+            System.arraycopy(PackFile.fromHex(entry.getValue()), 0, ids,
+                    i * ID, ID);
+            i += 1;
+        }
+        return new Snapshot(names, ids);
+    }
+
+    /** Return the snapshot tracking NAMES, which are sorted, with the
+     * binary blob IDs in IDS, as a tree leaf holds them.
+     * @return is the snapshot.*/
+    static Snapshot ofSorted(String[] names, byte[] ids) {
+        return new Snapshot(names, ids);
+    }
+
+    /** Return a snapshot holding the entries of PARTS, no two of which
+     * track the same name, merging them in name order.
+     * @return is the snapshot.*/
+    static Snapshot union(List<Snapshot> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        int size = 0;
+        PriorityQueue<int[]> next = new PriorityQueue<>(
+            Math.max(1, parts.size()), (a, b) -> parts.get(a[0])._names[a[1]]
+                    .compareTo(parts.get(b[0])._names[b[1]]));
+        for (int p = 0; p < parts.size(); p += 1) {
+            size += parts.get(p).size();
+            if (parts.get(p).size() > 0) {
+                next.add(new int[] {p, 0});
+            }
+        }
+        String[] names = new String[size];
+        byte[] ids = new byte[size * ID];
+        for (int n = 0; n < size; n += 1) {
+            int[] cursor = next.poll();
+            Snapshot part = parts.get(cursor[0]);
+            names[n] = part._names[cursor[1]];
+            System.arraycopy(part._ids, cursor[1] * ID, ids, n * ID, ID);
+            cursor[1] += 1;
+            if (cursor[1] < part._names.length) {
+                next.add(cursor);
+            }
+        }
+        return new Snapshot(names, ids);
+    }
+
+    /** Return a builder of snapshots changing this one.
+     * @return is the builder.*/
+    Builder edit() {
+        return new Builder(this);
+    }
+
+    /** Return the index of NAME in _names, or a negative number if it
+     * is not tracked.
+     * @return is the index.*/
+    private int indexOf(Object name) {
+        if (!(name instanceof String)) {
+            return -1;
+        }
+        return Arrays.binarySearch(_names, name);
+    }
+
+    @Override
+    public int size() {
+        return _names.length;
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return indexOf(name) >= 0;
+    }
+
+    @Override
+    public String get(Object name) {
+        int i = indexOf(name);
+        return i < 0 ? null : ObjectStore.toHex(_ids, i * ID, ID);
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return _names.length;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<>() {
+                    private int _next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return _next < _names.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        _next += 1;
+                        return new SimpleImmutableEntry<>(_names[_next - 1],
+                                ObjectStore.toHex(_ids, (_next - 1) * ID,
+                                        ID));
+                    }
+                };
+            }
+        };
+    }
+
+    /** Changes to a snapshot, made into a new one by build. The base is
+     * not copied until then, and not at all if nothing changed. */
+    static final class Builder {
+
+        /** Snapshot changed. */
+        private final Snapshot _base;
+
+        /** Changed names, mapped to their new binary blob IDs or to null
+         * if they are no longer tracked. */
+        private final TreeMap<String, byte[]> _changes = new TreeMap<>();
+
+        /** Builder changing BASE. */
+        private Builder(Snapshot base) {
+            _base = base;
+        }
+
+        /** Track NAME with BLOBID.
+         * @return is this builder.*/
+        Builder put(String name, String blobID) {
+            _changes.put(name, PackFile.fromHex(blobID));
+            return this;
+        }
+
+        /** Stop tracking NAME.
+         * @return is this builder.*/
+        Builder remove(String name) {
+            _changes.put(name, null);
+            return this;
+        }
+
+        /** Return the base snapshot with the changes made, merging the
+         * two sorted lists of names.
+         * @return is the new snapshot.*/
+        Snapshot build() {
+            if (_changes.isEmpty()) {
+                return _base;
+            }
+            int size = _base._names.length + _changes.size();
+            String[] names = new String[size];
+            byte[] ids = new byte[size * ID];
+            int i = 0;
+            int n = 0;
+            for (Map.Entry<String, byte[]> change : _changes.entrySet()) {
+                String name = change.getKey();
+                int same = i;
+                while (i < _base._names.length
+                        && _base._names[i].compareTo(name) < 0) {
+                    i += 1;
+                }
+                System.arraycopy(_base._names, same, names, n, i - same);
+                System.arraycopy(_base._ids, same * ID, ids, n * ID,
+                        (i - same) * ID);
+                n += i - same;
+                if (i < _base._names.length && _base._names[i].equals(name)) {
+                    i += 1;
+                }
+                if (change.getValue() != null) {
+                    names[n] = name;
+                    System.arraycopy(change.getValue(), 0, ids, n * ID, ID);
+                    n += 1;
+                }
+            }
+            int rest = _base._names.length - i;
+            System.arraycopy(_base._names, i, names, n, rest);
+            System.arraycopy(_base._ids, i * ID, ids, n * ID, rest * ID);
+            n += rest;
+            return new Snapshot(Arrays.copyOf(names, n),
+                    Arrays.copyOf(ids, n * ID));
+        }
+    }
+}
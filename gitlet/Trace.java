@@ -0,0 +1,247 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Class timing the phases of a command and counting the IO it does,
+ * for finding where a slow command spends its time. Tracing is off
+ * unless the GITLET_TRACE environment variable is set, or the command
+ * is preceded by --trace; the value "json" (or --trace=json) prints
+ * JSON lines, anything else a summary. Either goes to System.err when
+ * the command ends.
+ * A phase is timed by a span, opened with span and closed when the
+ * phase ends, mostly by try-with-resources. Spans nest, and spans of
+ * the same name under the same parent are added together, so one
+ * opened per file costs a counter, not a line of output. Only the
+ * thread running the command records spans; counters may be bumped
+ * from any thread.
+ * Every span is also a JFR event, gitlet.Span, so a flight recording
+ * shows the phases of each command at little cost even when tracing
+ * is off. With neither tracing nor a recording of gitlet.Span, a span
+ * is the shared NOOP and costs no allocation.
+ * @author Katrina Sharonin.*/
+final class Trace {
+
+    /** Environment variable turning tracing on. */
+    static final String ENV = "GITLET_TRACE";
+
+    /** Span that records nothing. */
+    private static final Span NOOP = new Span(null, null);
+
+    /** Type of SpanEvent, enabled while a recording takes spans. */
+    private static final EventType SPAN_EVENTS =
+            EventType.getEventType(SpanEvent.class);
+
+    /** True while a command is traced. */
+    private static volatile boolean on;
+
+    /** True if the trace is printed as JSON lines. */
+    private static boolean json;
+
+    /** Number of commands running, as batches run commands within
+     * one; only the outermost one starts and prints a trace. */
+    private static int depth;
+
+    /** Thread running the traced command. */
+    private static Thread owner;
+
+    /** Span of the whole command, above all others. */
+    private static Node root;
+
+    /** Innermost open span. */
+    private static Node current;
+
+    /** Calls and bytes of each counter, by name. */
+    private static final Map<String, LongAdder[]> COUNTERS =
+            new ConcurrentHashMap<>();
+
+    /** Not instantiated; static functions only. */
+    private Trace() {
+    }
+
+    /** Start tracing a command if MODE ("summary" or "json") is given
+     * or the environment asks for it. */
+    static void start(String mode) {
+        depth += 1;
+        if (depth > 1) {
+            return;
+        }
+        String chosen = mode != null ? mode : System.getenv(ENV);
+        if (chosen == null || chosen.isEmpty()) {
+            return;
+        }
+        json = chosen.equals("json");
+        owner = Thread.currentThread();
+        root = new Node("", null);
+        current = root;
+        COUNTERS.clear();
+        on = true;
+    }
+
+    /** End the command started last, printing its trace if it is the
+     * outermost and is traced. */
+    static void finish() {
+        depth -= 1;
+        if (depth > 0 || !on) {
+            return;
+        }
+        on = false;
+        print(System.err);
+    }
+
+    /** Return a span timing the phase NAME until it is closed.
+     * @return is the open span.*/
+    static Span span(String name) {
+        SpanEvent event = null;
+        if (SPAN_EVENTS.isEnabled()) {
+            event = new SpanEvent();
+            event.name = name;
+            event.begin();
+        }
+        if (!on || Thread.currentThread() != owner) {
+            return event == null ? NOOP : new Span(null, event);
+        }
+        current = current._children.computeIfAbsent(name,
+            child -> new Node(child, current));
+        return new Span(current, event);
+    }
+
+    /** Count one call to NAME, moving BYTES. */
+    static void count(String name, long bytes) {
+        if (!on) {
+            return;
+        }
+        LongAdder[] counter = COUNTERS.computeIfAbsent(name,
+            key -> new LongAdder[] {new LongAdder(), new LongAdder()});
+        counter[0].increment();
+        counter[1].add(bytes);
+    }
+
+    /** Print the spans and counters to OUT. */
+    private static void print(PrintStream out) {
+        if (json) {
+            for (Node node : root._children.values()) {
+                printJSON(out, node, "");
+            }
+            for (Map.Entry<String, LongAdder[]> counter
+                    : COUNTERS.entrySet()) {
+                out.printf("{\"counter\": \"%s\", \"calls\": %d, "
+                        + "\"bytes\": %d}%n", counter.getKey(),
+                        counter.getValue()[0].sum(),
+                        counter.getValue()[1].sum());
+            }
+        } else {
+            out.printf("%-40s %8s %12s%n", "span", "calls", "ms");
+            for (Node node : root._children.values()) {
+                printSummary(out, node, "");
+            }
+            out.printf("%-40s %8s %12s%n", "counter", "calls", "bytes");
+            for (Map.Entry<String, LongAdder[]> counter
+                    : COUNTERS.entrySet()) {
+                out.printf("%-40s %8d %12d%n", counter.getKey(),
+                        counter.getValue()[0].sum(),
+                        counter.getValue()[1].sum());
+            }
+        }
+        out.flush();
+    }
+
+    /** Print NODE and the spans below it, indented by INDENT. */
+    private static void printSummary(PrintStream out, Node node,
+                                     String indent) {
+        out.printf("%-40s %8d %12.3f%n", indent + node._name, node._calls,
+                node._nanos / 1e6);
+        for (Node child : node._children.values()) {
+            printSummary(out, child, indent + "  ");
+        }
+    }
+
+    /** Print NODE and the spans below it as JSON lines, naming each by
+     * its path below PREFIX. */
+    private static void printJSON(PrintStream out, Node node,
+                                  String prefix) {
+        String path = prefix + node._name;
+        out.printf("{\"span\": \"%s\", \"calls\": %d, \"ms\": %.3f}%n",
+                path.replace("\"", "\\\""), node._calls, node._nanos / 1e6);
+        for (Node child : node._children.values()) {
+            printJSON(out, child, path + "/");
+        }
+    }
+
+    /** Time of one phase, open until closed. */
+    static final class Span implements AutoCloseable {
+
+        /** Totals the time is added to, or null if not traced. */
+        private final Node _node;
+
+        /** JFR event of the phase, or null if not recorded. */
+        private final SpanEvent _event;
+
+        /** When the span was opened. */
+        private final long _start;
+
+        /** Span adding to NODE and committing EVENT, either of which
+         * may be null. */
+        private Span(Node node, SpanEvent event) {
+            _node = node;
+            _event = event;
+            _start = node == null ? 0 : System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (_event != null) {
+                _event.commit();
+            }
+            if (_node != null) {
+                _node._calls += 1;
+                _node._nanos += System.nanoTime() - _start;
+                current = _node._parent;
+            }
+        }
+    }
+
+    /** Totals of the spans of one name under one parent. */
+    private static final class Node {
+
+        /** Name of the spans. */
+        private final String _name;
+
+        /** Span they are opened in, null for the root. */
+        private final Node _parent;
+
+        /** Spans opened in these, by name, in first opened order. */
+        private final Map<String, Node> _children = new LinkedHashMap<>();
+
+        /** Number of spans closed. */
+        private long _calls;
+
+        /** Total time of the spans. */
+        private long _nanos;
+
+        /** Totals of spans NAME under PARENT. */
+        Node(String name, Node parent) {
+            _name = name;
+            _parent = parent;
+        }
+    }
+
+    /** JFR event of one span. */
+    @Name("gitlet.Span")
+    @Label("Gitlet Span")
+    @Category("Gitlet")
+    static final class SpanEvent extends Event {
+
+        /** Name of the phase. */
+        @Label("Name")
+        String name;
+    }
+}
@@ -0,0 +1,457 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/** Class storing commit snapshots (file name to blob ID) as content
+ * addressed tree objects, so commits share every part of the snapshot
+ * they did not change.
+ * Gitlet only tracks plain files, so the tree is not split by folder
+ * but by the SHA-1 of each file name: a node holding at most MAX_LEAF
+ * names is a leaf listing them; a bigger node at depth D is split into
+ * 16 children by hex digit D of the name hashes. The shape therefore
+ * depends only on the snapshot, and equal snapshots (or parts of them)
+ * always get equal IDs. Changing a few names rewrites only the nodes on
+ * their paths; every other subtree is referred to by its old ID.
+ * A leaf object is a 0 byte, an int count and, in name order, each
+ * name (modified UTF-8) with its 20 byte blob ID. An inner object is a
+ * 1 byte, a short whose bit i is set if child i is not empty, then for
+ * each such child its 20 byte ID and int count of names. A node's ID
+ * is the SHA-1 of ID_PREFIX and the object, so that it is not that of
+ * a blob holding the same bytes. Nodes written before the prefix keep
+ * their IDs, and are read alike.
+ * @author Katrina Sharonin.*/
+final class Tree {
+
+    /** Trees folder in gitlet folder.*/
+    static final File TREES_FOLDER =
+            Utils.join(RepoFace.GITLET_FOLDER, "trees");
+
+    /** Most names a leaf holds before it is split. */
+    static final int MAX_LEAF = 128;
+
+    /** Children of an inner node, one per hex digit. */
+    private static final int FANOUT = 16;
+
+    /** Hashed in front of a node to get its ID. */
+    private static final String ID_PREFIX = "tree ";
+
+    /** Prefix of the ObjectCache key of a node's content, which may
+     * share its ID with a blob if written before ID_PREFIX. */
+    private static final String CACHE_PREFIX = "tree:";
+
+    /** Kind byte of a leaf. */
+    private static final byte LEAF = 0;
+
+    /** Kind byte of an inner node. */
+    private static final byte INNER = 1;
+
+    /** Most snapshots kept by read. */
+    private static final int SNAPSHOTS_KEPT = 4;
+
+    /** Snapshots read last, by root ID, least recently used first.
+     * Snapshots never change, so every commit with the same tree (and
+     * every read of one commit, as in merge) shares one. */
+    private static final Map<String, Snapshot> SNAPSHOTS =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Snapshot> eldest) {
+                    return size() > SNAPSHOTS_KEPT;
+                }
+            };
+
+    /** Not instantiated; static functions only. */
+    private Tree() {
+    }
+
+    /** Store SNAPSHOT as a tree, writing whichever nodes are not
+     * stored yet.
+     * @return is the ID of the root.*/
+    static String write(Map<String, String> snapshot) {
+        return build(new TreeMap<>(snapshot), 0).id;
+    }
+
+    /** Store the tree with root ROOTID changed by CHANGES, where a null
+     * value removes the name. Only nodes on the paths of changed names
+     * are read or written.
+     * @return is the ID of the new root.*/
+    static String update(String rootID, Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return rootID;
+        }
+        return update(rootID, new TreeMap<>(changes), 0).id;
+    }
+
+    /** Return the snapshot stored in the tree with root ROOTID.
+     * @return is the map of file name to blob ID.*/
+    static Snapshot read(String rootID) {
+        synchronized (SNAPSHOTS) {
+            Snapshot kept = SNAPSHOTS.get(rootID);
+            if (kept != null) {
+                return kept;
+            }
+        }
+        List<Snapshot> leaves = new ArrayList<>();
+        collect(rootID, leaves);
+        Snapshot result = Snapshot.union(leaves);
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.put(rootID, result);
+        }
+        return result;
+    }
+
+    /** Return the blob ID NAME has in the tree with root ROOTID, or null
+     * if it is not tracked there. Reads one node per level, unless the
+     * snapshot is kept.
+     * @return is the blob ID.*/
+    static String lookup(String rootID, String name) {
+        synchronized (SNAPSHOTS) {
+            Snapshot kept = SNAPSHOTS.get(rootID);
+            if (kept != null) {
+                return kept.get(name);
+            }
+        }
+        byte[] nameHash = nameHash(name);
+        Node node = Node.load(rootID);
+        for (int depth = 0; node.entries == null; depth += 1) {
+            String child = node.children[digit(nameHash, depth)];
+            if (child == null) {
+                return null;
+            }
+            node = Node.load(child);
+        }
+        return node.entries.get(name);
+    }
+
+    /** Offer the ID of every node and blob of the tree with root ROOTID
+     * to ADD, which returns false for IDs it already holds. Below a node
+     * ADD refuses nothing is offered, since equal nodes hold equal
+     * subtrees. */
+    static void addObjects(String rootID, Predicate<String> add) {
+        if (!add.test(rootID)) {
+            return;
+        }
+        Node node = Node.load(rootID);
+        if (node.entries != null) {
+            for (String blobID : node.entries.values()) {
+                add.test(blobID);
+            }
+            return;
+        }
+        for (String child : node.children) {
+            if (child != null) {
+                addObjects(child, add);
+            }
+        }
+    }
+
+    /** Return true if a tree node with ID is stored.
+     * @return is boolean.*/
+    static boolean exists(String id) {
+        return PackFile.contains(id, ObjectStore.TREE_TYPE)
+                || ObjectStore.looseFile(TREES_FOLDER, id).exists();
+    }
+
+    /** Store the node holding ENTRIES at DEPTH and everything below it.
+     * @return is the stored node.*/
+    private static Ref build(TreeMap<String, String> entries, int depth) {
+        if (entries.size() <= MAX_LEAF
+                || depth == 2 * PackFile.ID_BYTES) {
+            return Node.leaf(entries).store();
+        }
+        List<TreeMap<String, String>> parts = split(entries, depth);
+        Node inner = Node.inner();
+        for (int i = 0; i < FANOUT; i += 1) {
+            if (!parts.get(i).isEmpty()) {
+                inner.set(i, build(parts.get(i), depth + 1));
+            }
+        }
+        return inner.store();
+    }
+
+    /** Store the node with ID at DEPTH changed by CHANGES.
+     * @return is the stored node.*/
+    private static Ref update(String id, TreeMap<String, String> changes,
+                              int depth) {
+        Node node = Node.load(id);
+        if (node.entries != null) {
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    node.entries.remove(change.getKey());
+                } else {
+                    node.entries.put(change.getKey(), change.getValue());
+                }
+            }
+            return build(node.entries, depth);
+        }
+        List<TreeMap<String, String>> parts = split(changes, depth);
+        for (int i = 0; i < FANOUT; i += 1) {
+            TreeMap<String, String> part = parts.get(i);
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (node.children[i] == null) {
+                part.values().removeIf(v -> v == null);
+                if (!part.isEmpty()) {
+                    node.set(i, build(part, depth + 1));
+                }
+            } else {
+                node.set(i, update(node.children[i], part, depth + 1));
+            }
+        }
+        if (node.count() <= MAX_LEAF) {
+            List<Snapshot> leaves = new ArrayList<>();
+            for (String child : node.children) {
+                if (child != null) {
+                    collect(child, leaves);
+                }
+            }
+            return Node.leaf(new TreeMap<>(Snapshot.union(leaves))).store();
+        }
+        return node.store();
+    }
+
+    /** Add every leaf under the node with ID to LEAVES, each read as a
+     * snapshot so its blob IDs are never turned into hex. */
+    private static void collect(String id, List<Snapshot> leaves) {
+        byte[] content = Node.content(id);
+        if (content[0] == LEAF) {
+            leaves.add(Node.leafSnapshot(content));
+            return;
+        }
+        for (String child : Node.parse(content).children) {
+            if (child != null) {
+                collect(child, leaves);
+            }
+        }
+    }
+
+    /** Return ENTRIES split by hex digit DEPTH of their name hashes.
+     * @return is one map per digit.*/
+    private static List<TreeMap<String, String>> split(
+            TreeMap<String, String> entries, int depth) {
+        List<TreeMap<String, String>> parts = new ArrayList<>(FANOUT);
+        for (int i = 0; i < FANOUT; i += 1) {
+            parts.add(new TreeMap<>());
+        }
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            parts.get(digit(nameHash(entry.getKey()), depth))
+                    .put(entry.getKey(), entry.getValue());
+        }
+        return parts;
+    }
+
+    /** Return hex digit DEPTH of HASH.
+     * @return is the digit.*/
+    private static int digit(byte[] hash, int depth) {
+        int b = hash[depth / 2] & 0xFF;
+        return depth % 2 == 0 ? b >>> 4 : b & 0xF;
+    }
+
+    /** Return the SHA-1 of NAME.
+     * @return is the 20 byte hash.*/
+    private static byte[] nameHash(String name) {
+        try {
+            return MessageDigest.getInstance("SHA-1")
+                    .digest(name.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support "
+                    + "SHA-1");
+        }
+    }
+
+    /** A stored node: its ID and the number of names under it. */
+    private static final class Ref {
+
+        /** ID of the node. */
+        private final String id;
+
+        /** Names under the node. */
+        private final int count;
+
+        /** Reference to node ID holding COUNT names. */
+        Ref(String id, int count) {
+            this.id = id;
+            this.count = count;
+        }
+    }
+
+    /** One tree node in memory: a leaf with ENTRIES, or an inner node
+     * with CHILDREN and their COUNTS. */
+    private static final class Node {
+
+        /** Names and blob IDs of a leaf, null for inner nodes. */
+        private TreeMap<String, String> entries;
+
+        /** Child IDs of an inner node, null where empty. */
+        private String[] children;
+
+        /** Names under each child of an inner node. */
+        private int[] counts;
+
+        /** Return a leaf holding ENTRIES.
+         * @return is the node.*/
+        static Node leaf(TreeMap<String, String> entries) {
+            Node node = new Node();
+            node.entries = entries;
+            return node;
+        }
+
+        /** Return an inner node with no children yet.
+         * @return is the node.*/
+        static Node inner() {
+            Node node = new Node();
+            node.children = new String[FANOUT];
+            node.counts = new int[FANOUT];
+            return node;
+        }
+
+        /** Make child I of this inner node CHILD, or empty if CHILD
+         * holds no names. */
+        void set(int i, Ref child) {
+            children[i] = child.count == 0 ? null : child.id;
+            counts[i] = child.count;
+        }
+
+        /** Return the number of names under this node.
+         * @return is the count.*/
+        int count() {
+            if (entries != null) {
+                return entries.size();
+            }
+            int total = 0;
+            for (int childCount : counts) {
+                total += childCount;
+            }
+            return total;
+        }
+
+        /** Write this node unless an equal one is already stored.
+         * @return is the stored node.*/
+        Ref store() {
+            byte[] content = encode();
+            String id = Utils.sha1(ID_PREFIX, content);
+            if (!exists(id)) {
+                ObjectStore.writeObject(
+                        ObjectStore.shardFile(TREES_FOLDER, id),
+                        ObjectStore.TREE_TYPE, content);
+            }
+            return new Ref(id, count());
+        }
+
+        /** Return this node in its stored form.
+         * @return is the content bytes.*/
+        private byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                if (entries != null) {
+                    out.writeByte(LEAF);
+                    out.writeInt(entries.size());
+                    for (Map.Entry<String, String> entry
+                            : entries.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.write(PackFile.fromHex(entry.getValue()));
+                    }
+                } else {
+                    out.writeByte(INNER);
+                    int mask = 0;
+                    for (int i = 0; i < FANOUT; i += 1) {
+                        mask |= children[i] == null ? 0 : 1 << i;
+                    }
+                    out.writeShort(mask);
+                    for (int i = 0; i < FANOUT; i += 1) {
+                        if (children[i] != null) {
+                            out.write(PackFile.fromHex(children[i]));
+                            out.writeInt(counts[i]);
+                        }
+                    }
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return bytes.toByteArray();
+        }
+
+        /** Read the stored node with ID.
+         * @return is the node.*/
+        static Node load(String id) {
+            return parse(content(id));
+        }
+
+        /** Return the stored content of the node with ID.
+         * @return is the content.*/
+        static byte[] content(String id) {
+            byte[] content = ObjectCache.get(CACHE_PREFIX + id);
+            if (content == null) {
+                content = ObjectStore.readStored(id, TREES_FOLDER,
+                        ObjectStore.TREE_TYPE).content();
+                ObjectCache.put(CACHE_PREFIX + id, content);
+            }
+            return content;
+        }
+
+        /** Return the leaf stored as CONTENT as a snapshot, keeping its
+         * blob IDs binary.
+         * @return is the snapshot.*/
+        static Snapshot leafSnapshot(byte[] content) {
+            try (DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(content, 1,
+                            content.length - 1))) {
+                String[] names = new String[in.readInt()];
+                byte[] ids = new byte[names.length * PackFile.ID_BYTES];
+                for (int i = 0; i < names.length; i += 1) {
+                    names[i] = in.readUTF();
+                    in.readFully(ids, i * PackFile.ID_BYTES,
+                            PackFile.ID_BYTES);
+                }
+                return Snapshot.ofSorted(names, ids);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** Return the node stored as CONTENT.
+         * @return is the node.*/
+        static Node parse(byte[] content) {
+            byte[] raw = new byte[PackFile.ID_BYTES];
+            try (DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(content))) {
+                if (in.readByte() == LEAF) {
+                    Node node = leaf(new TreeMap<>());
+                    for (int n = in.readInt(); n > 0; n -= 1) {
+                        String name = in.readUTF();
+                        in.readFully(raw);
+                        node.entries.put(name, ObjectStore.toHex(raw));
+                    }
+                    return node;
+                }
+                Node node = inner();
+                int mask = in.readUnsignedShort();
+                for (int i = 0; i < FANOUT; i += 1) {
+                    if ((mask & 1 << i) != 0) {
+                        in.readFully(raw);
+                        node.children[i] = ObjectStore.toHex(raw);
+                        node.counts[i] = in.readInt();
+                    }
+                }
+                return node;
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+}
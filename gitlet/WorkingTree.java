@@ -0,0 +1,161 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Class representing one scan of the working directory: the blob ID
+ * of every plain file in it and how each stands against the snapshot
+ * of the current commit. Files are hashed in parallel on the common
+ * ForkJoinPool, each task streaming its file through the per thread
+ * hashing buffer of ObjectStore, so memory stays bounded by the number
+ * of workers whatever the file sizes. Unchanged files are answered from
+ * the stat cache of the index without being read.
+ * checkout, reset and merge all use the scan to refuse to overwrite
+ * work that is not committed.
+ * @author Katrina Sharonin.*/
+final class WorkingTree {
+
+    /** How a working file stands against the current commit. */
+    enum State {
+        /** Tracked, with the content the commit has. */
+        TRACKED,
+        /** Tracked, with different content. */
+        MODIFIED,
+        /** Not tracked by the commit. */
+        UNTRACKED
+    }
+
+    /** Files hashed by one task before it stops splitting. */
+    private static final int FILES_PER_TASK = 8;
+
+    /** Blob ID of each working file, by name. */
+    private final TreeMap<String, String> _blobIDs;
+
+    /** Snapshot of the current commit. */
+    private final Map<String, String> _tracked;
+
+    /** Scan result of BLOBIDS against TRACKED. */
+    private WorkingTree(TreeMap<String, String> blobIDs,
+                        Map<String, String> tracked) {
+        _blobIDs = blobIDs;
+        _tracked = tracked;
+    }
+
+    /** Hash every plain file in DIR, through the stat cache of INDEX,
+     * and classify it against TRACKED, the current commit's snapshot.
+     * Hashes are kept in INDEX only in memory; saving it, so later
+     * scans reuse them, is up to the caller.
+     * @return is the scan.*/
+    @SuppressWarnings("try")
+    static WorkingTree scan(File dir, Index index,
+                            Map<String, String> tracked) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        String[] blobIDs = new String[names.size()];
+        try (Trace.Span span = Trace.span("scan working tree")) {
+            ForkJoinPool.commonPool().invoke(new HashTask(dir, index,
+                    names, blobIDs, 0, names.size()));
+        }
+        TreeMap<String, String> result = new TreeMap<>();
+        for (int i = 0; i < blobIDs.length; i += 1) {
+            result.put(names.get(i), blobIDs[i]);
+        }
+        return new WorkingTree(result, tracked);
+    }
+
+    /** Return the names of all working files.
+     * @return is the sorted names.*/
+    Set<String> names() {
+        return _blobIDs.keySet();
+    }
+
+    /** Return the blob ID working file NAME hashes to, or null if there
+     * is no such file.
+     * @return is the blob ID.*/
+    String blobID(String name) {
+        return _blobIDs.get(name);
+    }
+
+    /** Return how working file NAME stands against the current commit.
+     * @return is the state.*/
+    State state(String name) {
+        String committed = _tracked.get(name);
+        if (committed == null) {
+            return State.UNTRACKED;
+        }
+        return committed.equals(_blobIDs.get(name))
+                ? State.TRACKED : State.MODIFIED;
+    }
+
+    /** Return true if writing the snapshot TARGET over the working
+     * directory would lose a file that is untracked or modified and
+     * that TARGET has with different content.
+     * @return is boolean.*/
+    boolean overwrites(Map<String, String> target) {
+        for (Map.Entry<String, String> file : _blobIDs.entrySet()) {
+            String wanted = target.get(file.getKey());
+            if (wanted != null && !wanted.equals(file.getValue())
+                    && state(file.getKey()) != State.TRACKED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Task hashing the files NAMES[FROM..TO) of DIR into BLOBIDS,
+     * splitting itself in halves down to FILES_PER_TASK files. */
+    private static final class HashTask extends RecursiveAction {
+
+        /** Tasks are never serialized; pinned to keep lint quiet. */
+        private static final long serialVersionUID = 1L;
+
+        /** Folder of the files. */
+        private final File _dir;
+
+        /** Index whose stat cache is used. */
+        private final Index _index;
+
+        /** Names of all files scanned. */
+        private final List<String> _names;
+
+        /** Blob IDs found, parallel to _names. */
+        private final String[] _blobIDs;
+
+        /** First position hashed by this task. */
+        private final int _from;
+
+        /** Position after the last hashed by this task. */
+        private final int _to;
+
+        /** Task for NAMES[FROM..TO) of DIR, through INDEX, into
+         * BLOBIDS. */
+        HashTask(File dir, Index index, List<String> names,
+                 String[] blobIDs, int from, int to) {
+            _dir = dir;
+            _index = index;
+            _names = names;
+            _blobIDs = blobIDs;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from <= FILES_PER_TASK) {
+                for (int i = _from; i < _to; i += 1) {
+                    _blobIDs[i] = _index.hashOf(
+                            Utils.join(_dir, _names.get(i)));
+                }
+                return;
+            }
+            int mid = (_from + _to) >>> 1;
+            invokeAll(new HashTask(_dir, _index, _names, _blobIDs,
+                            _from, mid),
+                    new HashTask(_dir, _index, _names, _blobIDs, mid, _to));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/** Tests of packing. They make a repository in the working directory,
+ * so they are skipped where one exists already, and delete it when
+ * done. Repository paths are fixed once RepoFace loads, so run them
+ * in a JVM working in a scratch directory (mvn test does).
+ * @author Katrina Sharonin.*/
+public class PackTest {
+
+    /** Content of the empty tree leaf before tree IDs were prefixed:
+     * a kind byte and an int count, all zero. */
+    private static final byte[] FIVE_NULS = new byte[5];
+
+    /** Output of the JVM, restored after each test. */
+    private PrintStream _out;
+
+    /** Start each test with a new repository, if there is none. */
+    @Before
+    public void init() {
+        assumeFalse(RepoFace.GITLET_FOLDER.exists());
+        _out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        RepoFace.initCommand();
+    }
+
+    /** Delete the repository and the files the test wrote. */
+    @After
+    public void delete() throws IOException {
+        System.setOut(_out);
+        try (Stream<Path> all = Files.walk(RepoFace.GITLET_FOLDER
+                .toPath())) {
+            all.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+        working("z.bin").delete();
+    }
+
+    /** A blob whose bytes are those of a tree node survives packing
+     * and is checked out whole. */
+    @Test
+    public void blobLikeTreeSurvivesPack() throws IOException {
+        File file = working("z.bin");
+        Files.write(file.toPath(), FIVE_NULS);
+        RepoFace.addCommand("z.bin");
+        RepoFace.commitCommand("five nuls");
+        RepoFace.packCommand();
+        file.delete();
+        RepoFace.checkoutCommandFILENAME("z.bin");
+        assertArrayEquals(FIVE_NULS, Files.readAllBytes(file.toPath()));
+        assertTrue(Tree.read(Commit.getCommitFromFile(Utils
+                .readContentsAsString(RepoFace.headdReturner()))
+                .getTree()).containsKey("z.bin"));
+    }
+
+    /** Return working file NAME.
+     * @return is the file.*/
+    private static File working(String name) {
+        return new File(RepoFace.GITLET_FOLDER.getParentFile(), name);
+    }
+}